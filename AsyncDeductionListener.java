@@ -0,0 +1,92 @@
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * prints deductions as move lines on a background thread, the solving
+ * thread only queues them, once the queue is full the solving thread waits
+ * for the printer
+ * 
+ * @author Kyler
+ *
+ */
+public class AsyncDeductionListener implements DeductionListener {
+	private static final int QUEUE_SIZE = 4096;
+	/* queued by close to stop the printer */
+	private static final Deduction END = new Deduction(null, 0);
+	private BlockingQueue<Deduction> queue = new ArrayBlockingQueue<Deduction>(QUEUE_SIZE);
+	private PrintStream out;
+	private Thread printer;
+	
+	/**
+	 * a queued deduction, edges are immutable positions so they can be
+	 * formatted on the printer thread
+	 */
+	private static class Deduction {
+		private Edge edge;
+		private int value;
+		
+		public Deduction(Edge edge, int value) {
+			this.edge = edge;
+			this.value = value;
+		}
+	}
+	
+	public AsyncDeductionListener(PrintStream out) {
+		this.out = out;
+		printer = new Thread(new Runnable() {
+			public void run() {
+				print();
+			}
+		}, "deduction-printer");
+		printer.setDaemon(true);
+		printer.start();
+	}
+	
+	public void deduced(Edge edge, int value, String tag) {
+		try {
+			queue.put(new Deduction(edge, value));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/* prints queued deductions until close, batching everything queued at once */
+	private void print() {
+		StringBuilder sb = new StringBuilder();
+		Deduction deduction;
+		try {
+			while (true) {
+				deduction = queue.take();
+				do {
+					if (deduction == END) {
+						out.print(sb);
+						out.flush();
+						return;
+					}
+					sb.append(format(deduction.edge, deduction.value)).append('\n');
+					deduction = queue.poll();
+				} while (deduction != null);
+				out.print(sb);
+				sb.setLength(0);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/* move line of a deduction, the format the solver used to print */
+	static String format(Edge edge, int value) {
+		return ">> Solver: Move: " + edge.toString() + (value == Edge.POSITIVE ? "Positive" : "Negative");
+	}
+	
+	/* prints the remaining deductions and stops the printer thread */
+	public void close() {
+		try {
+			queue.put(END);
+			printer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
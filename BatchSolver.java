@@ -0,0 +1,373 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * solves many puzzle files without a menu, one puzzle per task on a
+ * worker pool, and prints a summary line per puzzle. a file may hold many
+ * puzzles separated by empty lines or be a binary Corpus
+ *
+ * @author Kyler
+ *
+ */
+public class BatchSolver {
+	private int numThreads;
+	/* directory solved boards are written to, null to skip writing them */
+	private File outDir;
+	/* if above 0 the solutions of every puzzle are counted up to this limit instead of solving it */
+	private int countLimit;
+	/* solutions looked up before solving and stored after, null for none */
+	private SolutionCache cache;
+	
+	public BatchSolver(int numThreads, File outDir) {
+		this.numThreads = numThreads;
+		this.outDir = outDir;
+	}
+	
+	public int getCountLimit() {
+		return countLimit;
+	}
+	
+	/* sets the limit solutions are counted up to, 2 checks every puzzle is unique, 0 only solves */
+	public void setCountLimit(int countLimit) {
+		this.countLimit = countLimit;
+	}
+	
+	public SolutionCache getCache() {
+		return cache;
+	}
+	
+	/* sets the cache of solutions, it is not used while counting solutions */
+	public void setCache(SolutionCache cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * result of solving one puzzle
+	 *
+	 * @author Kyler
+	 */
+	public static class Result {
+		private File file;
+		/* position of the puzzle in its file and number of puzzles in the file */
+		private int index;
+		private int numPuzzles;
+		private Board board;
+		private int numRows;
+		private int numCols;
+		private long nanos;
+		private long numDeductions;
+		private boolean solved;
+		/* solutions counted, -1 if they were not counted */
+		private int numSolutions = -1;
+		private int countLimit;
+		
+		public File getFile() {
+			return file;
+		}
+		
+		public int getIndex() {
+			return index;
+		}
+		
+		/* return path of the file, followed by the puzzle number if the file holds several */
+		public String getName() {
+			return numPuzzles > 1 ? file.getPath() + "#" + (index + 1) : file.getPath();
+		}
+		
+		/* return the board as left by the solver */
+		public Board getBoard() {
+			return board;
+		}
+		
+		public long getNanos() {
+			return nanos;
+		}
+		
+		public long getNumDeductions() {
+			return numDeductions;
+		}
+		
+		public boolean isSolved() {
+			return solved;
+		}
+		
+		public int getNumSolutions() {
+			return numSolutions;
+		}
+		
+		/* return true if the solutions were counted and there is exactly one */
+		public boolean isUnique() {
+			return numSolutions == 1;
+		}
+		
+		public String toString() {
+			String status;
+			if (numSolutions < 0) {
+				status = solved ? "solved" : "unsolved";
+			} else if (numSolutions == 0) {
+				status = "no solution";
+			} else if (numSolutions == 1) {
+				status = "unique";
+			} else {
+				status = numSolutions + (numSolutions == countLimit ? "+" : "") + " solutions";
+			}
+			return String.format("%-24s %3dx%-3d %10.3f %10d  %s", getName(), numRows, numCols,
+					nanos / 1000000.0d, numDeductions, status);
+		}
+	}
+	
+	/**
+	 * expands the passed paths into puzzle files, directories contribute
+	 * their .txt and corpus files in name order
+	 */
+	public static List<File> listPuzzles(List<String> paths) {
+		ArrayList<File> files = new ArrayList<File>();
+		for (String path : paths) {
+			File file = new File(path);
+			if (file.isDirectory()) {
+				File[] children = file.listFiles();
+				Arrays.sort(children);
+				for (File child : children) {
+					if (child.isFile() && (child.getName().endsWith(".txt") || isCorpus(child))) {
+						files.add(child);
+					}
+				}
+			} else {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+	
+	/**
+	 * solves every puzzle of the files and prints a summary to out
+	 *
+	 * @return results in the order of the files and of the puzzles in them
+	 */
+	public List<Result> run(List<File> files, PrintStream out) {
+		ArrayList<Result> puzzles = new ArrayList<Result>();
+		ArrayList<Result> results = new ArrayList<Result>();
+		ArrayList<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+		if (outDir != null && isSourceDir(files)) {
+			/* solutions are written under the names of the puzzles, they would overwrite them or be solved by a later run */
+			out.println(">> Batch: " + outDir.getPath() + " is or lies in a directory of puzzles being solved, choose another -out directory");
+			return results;
+		}
+		File clash = outDir != null ? findNameClash(files) : null;
+		if (clash != null) {
+			/* both would be written to the same file of outDir */
+			out.println(">> Batch: more than one puzzle file is named " + clash.getName() + ", their solutions would overwrite each other in " + outDir.getPath());
+			return results;
+		}
+		int numFailed = 0;
+		long startX = System.nanoTime();
+		for (File file : files) {
+			try {
+				List<Board> boards = isCorpus(file) ? readCorpus(file) : Board.readAll(file.getPath());
+				for (int k = 0; k < boards.size(); k++) {
+					Result result = new Result();
+					result.file = file;
+					result.index = k;
+					result.numPuzzles = boards.size();
+					result.board = boards.get(k);
+					puzzles.add(result);
+				}
+			} catch (IOException e) {
+				out.println(">> Batch: " + e.toString());
+				numFailed++;
+			}
+		}
+		long loadX = System.nanoTime();
+		for (final Result puzzle : puzzles) {
+			tasks.add(new Callable<Result>() {
+				public Result call() {
+					return solve(puzzle);
+				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			out.println(String.format("%-24s %7s %10s %10s  %s", "puzzle", "size", "ms", "deductions", "status"));
+			/* results are printed in file order as they complete */
+			for (Future<Result> future : pool.invokeAll(tasks)) {
+				try {
+					Result result = future.get();
+					results.add(result);
+					out.println(result.toString());
+				} catch (ExecutionException e) {
+					out.println(">> Batch: " + e.getCause().toString());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdown();
+		}
+		long stopX = System.nanoTime();
+		if (outDir != null) {
+			write(results, out);
+		}
+		double sec = (double)(stopX - startX) / 1000000000.0d;
+		int numSolved = 0;
+		int numUnique = 0;
+		for (Result result : results) {
+			if (result.isSolved()) {
+				numSolved++;
+			}
+			if (result.isUnique()) {
+				numUnique++;
+			}
+		}
+		out.println(">> Batch: " + numSolved + " solved, " + (puzzles.size() - numSolved) + " unsolved"
+				+ (countLimit > 0 ? ", " + numUnique + " unique, " + (puzzles.size() - numUnique) + " not unique" : "")
+				+ (numFailed > 0 ? ", " + numFailed + " files not loaded" : "")
+				+ "\n\t" + "-> Load: " + Double.toString((double)(loadX - startX) / 1000000000.0d)
+				+ "\n\t" + "-> Time: " + Double.toString(sec)
+				+ "\n\t" + "-> Puzzles/s: " + String.format("%.1f", results.size() / sec)
+				+ (cache != null ? "\n\t" + "-> Cache hits: " + cache.getNumHits() + " of " + (cache.getNumHits() + cache.getNumMisses()) : ""));
+		return results;
+	}
+	
+	/* solves one loaded puzzle */
+	private Result solve(Result result) {
+		long startX = System.nanoTime();
+		Board board = result.board;
+		Solver solver = new Solver(board);
+		solver.setVerbose(false);
+		if (countLimit > 0) {
+			/* each puzzle is counted on one thread, the pool already keeps every core busy */
+			result.numSolutions = solver.countSolutions(countLimit, 1);
+			result.countLimit = countLimit;
+		} else if (cache != null && cache.lookup(board)) {
+			/* a repeat of a puzzle solved before, in any orientation */
+		} else {
+			solver.SATsolve();
+			if (cache != null && solver.checkIfSolved()) {
+				cache.store(board);
+			}
+		}
+		result.solved = solver.checkIfSolved();
+		result.nanos = System.nanoTime() - startX;
+		result.numRows = board.getNumRows();
+		result.numCols = board.getNumCols();
+		result.numDeductions = solver.getNumDeductions();
+		return result;
+	}
+	
+	/* return true if outDir is the directory of any of the files or lies inside it */
+	private boolean isSourceDir(List<File> files) {
+		try {
+			File out = outDir.getCanonicalFile();
+			for (File file : files) {
+				File parent = file.getCanonicalFile().getParentFile();
+				for (File dir = out; dir != null; dir = dir.getParentFile()) {
+					if (dir.equals(parent)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} catch (IOException e) {
+			/* a path that cannot be resolved cannot be shown to be safe */
+			return true;
+		}
+	}
+	
+	/* return a file sharing its name with another of the files, null if every name is distinct */
+	private static File findNameClash(List<File> files) {
+		HashMap<String, File> byName = new HashMap<String, File>();
+		try {
+			for (File file : files) {
+				File canonical = file.getCanonicalFile();
+				File other = byName.put(file.getName(), canonical);
+				if (other != null && !other.equals(canonical)) {
+					return file;
+				}
+			}
+			return null;
+		} catch (IOException e) {
+			/* a path that cannot be resolved cannot be shown to be safe */
+			return files.get(0);
+		}
+	}
+	
+	private static boolean isCorpus(File file) {
+		return file.getName().endsWith(Corpus.EXTENSION);
+	}
+	
+	/* return every puzzle of the corpus file */
+	private static List<Board> readCorpus(File file) throws IOException {
+		Corpus corpus = new Corpus(file.getPath());
+		ArrayList<Board> boards = new ArrayList<Board>(corpus.size());
+		for (int k = 0; k < corpus.size(); k++) {
+			boards.add(corpus.getBoard(k));
+		}
+		return boards;
+	}
+	
+	/**
+	 * writes the results of each file to a file of the same name in outDir,
+	 * which run keeps apart from the directories of the files and checks no
+	 * two files share a name,
+	 * a corpus gets the solutions of the solved puzzles, a text file gets
+	 * the boards as left by the solver separated by empty lines
+	 */
+	private void write(List<Result> results, PrintStream out) {
+		outDir.mkdirs();
+		int i = 0;
+		while (i < results.size()) {
+			File file = results.get(i).getFile();
+			int first = i;
+			while (i < results.size() && results.get(i).getFile() == file) {
+				i++;
+			}
+			try {
+				if (isCorpus(file)) {
+					writeCorpus(results.subList(first, i), new File(outDir, file.getName()));
+				} else {
+					writeText(results.subList(first, i), new File(outDir, file.getName()));
+				}
+			} catch (IOException e) {
+				out.println(">> Batch: " + e.toString());
+			}
+		}
+	}
+	
+	private static void writeCorpus(List<Result> results, File file) throws IOException {
+		Corpus.Builder builder = new Corpus.Builder(file.getPath());
+		try {
+			for (Result result : results) {
+				builder.add(result.getBoard(), result.isSolved());
+			}
+		} finally {
+			builder.close();
+		}
+	}
+	
+	private static void writeText(List<Result> results, File file) throws IOException {
+		Writer writer = new BufferedWriter(new FileWriter(file));
+		try {
+			for (Result result : results) {
+				if (result.getIndex() > 0) {
+					writer.write("\n");
+				}
+				result.getBoard().render(writer, false);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,304 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * measures loading, copying, rule application and end-to-end solves on the
+ * boards of a directory, every benchmark is run for a number of warmup
+ * iterations followed by measured iterations and reports time and bytes
+ * allocated per operation
+ *
+ * usage: Benchmark [-wi n] [-i n] [-time ms] [-threads n] [-boards dir] [filter]
+ *
+ * @author Kyler
+ *
+ */
+public class Benchmark {
+	private int warmupIterations = 3;
+	private int iterations = 5;
+	/* minimum length of one iteration, an operation is repeated until it is reached */
+	private long iterationNanos = 200000000L;
+	private int numThreads = 1;
+	/* only benchmarks whose name contains the filter are run */
+	private String filter = "";
+	/* results of every operation are added here so they can not be optimized away */
+	private long sink;
+	private ThreadMXBean threadBean;
+	
+	/**
+	 * one benchmarked operation, setUp is called before every iteration and
+	 * is not measured
+	 */
+	private static abstract class Task {
+		private String name;
+		
+		public Task(String name) {
+			this.name = name;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public void setUp() {
+			/* empty */
+		}
+		
+		public abstract long run();
+	}
+	
+	public static void main(String[] args) {
+		Benchmark benchmark = new Benchmark();
+		File dir = new File("boards");
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-wi")) {
+					benchmark.warmupIterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-i")) {
+					benchmark.iterations = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-time")) {
+					benchmark.iterationNanos = Long.parseLong(args[++i]) * 1000000L;
+				} else if (args[i].equals("-threads")) {
+					benchmark.numThreads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-boards")) {
+					dir = new File(args[++i]);
+				} else {
+					benchmark.filter = args[i];
+				}
+			}
+		} catch (RuntimeException e) {
+			System.out.println("usage: Benchmark [-wi n] [-i n] [-time ms] [-threads n] [-boards dir] [filter]");
+			return;
+		}
+		benchmark.run(BatchSolver.listPuzzles(Arrays.asList(dir.getPath())));
+	}
+	
+	public Benchmark() {
+		threadBean = ManagementFactory.getThreadMXBean();
+	}
+	
+	/**
+	 * runs every benchmark matching the filter on the passed board files and
+	 * prints one row per benchmark
+	 */
+	public void run(List<File> files) {
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		ArrayList<Board> boards = new ArrayList<Board>();
+		for (File file : files) {
+			try {
+				boards.add(addBoardTasks(tasks, file.getPath()));
+			} catch (IOException e) {
+				System.out.println(">> Benchmark: " + e.getMessage());
+			}
+		}
+		for (int rule = 0; rule < Solver.RULE_NAMES.length; rule++) {
+			tasks.add(ruleTask(boards, rule));
+		}
+		System.out.println(String.format("%-40s %14s %12s %14s %10s", "benchmark", "ns/op", "error", "B/op", "ops"));
+		for (Task task : tasks) {
+			if (task.getName().contains(filter)) {
+				measure(task);
+			}
+		}
+		if (sink == 42) {
+			System.out.println();
+		}
+	}
+	
+	/* runs the warmup and measured iterations of the task and prints its row */
+	private void measure(Task task) {
+		for (int i = 0; i < warmupIterations; i++) {
+			iteration(task);
+		}
+		double[] nanosPerOp = new double[iterations];
+		double bytesPerOp = 0;
+		long ops = 0;
+		for (int i = 0; i < iterations; i++) {
+			long[] result = iteration(task);
+			nanosPerOp[i] = (double) result[1] / result[0];
+			bytesPerOp += (double) result[2] / result[0];
+			ops += result[0];
+		}
+		double mean = 0;
+		for (double x : nanosPerOp) {
+			mean += x;
+		}
+		mean /= iterations;
+		double var = 0;
+		for (double x : nanosPerOp) {
+			var += (x - mean) * (x - mean);
+		}
+		double error = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+		String bytes = allocatedBytes() < 0 ? "n/a" : String.format("%.1f", bytesPerOp / iterations);
+		System.out.println(String.format("%-40s %14.1f %12.1f %14s %10d", task.getName(), mean, error, bytes, ops));
+	}
+	
+	/**
+	 * repeats the task until the iteration time is reached
+	 *
+	 * @return number of operations, nanoseconds and bytes allocated
+	 */
+	private long[] iteration(Task task) {
+		task.setUp();
+		long ops = 0;
+		long bytes = allocatedBytes();
+		long startX = System.nanoTime();
+		long stopX;
+		do {
+			sink += task.run();
+			ops++;
+			stopX = System.nanoTime();
+		} while (stopX - startX < iterationNanos);
+		bytes = allocatedBytes() - bytes;
+		return new long[] { ops, stopX - startX, bytes };
+	}
+	
+	/* bytes allocated by the current thread, -1 if the JVM does not count them */
+	private long allocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+	
+	/**
+	 * adds the loading, copying, rule and solve benchmarks of one board
+	 *
+	 * @return the loaded board
+	 */
+	private Board addBoardTasks(ArrayList<Task> tasks, final String filename) throws IOException {
+		final String name = new File(filename).getName();
+		final Board loaded = new Board(filename);
+		final Board solved = new Board(filename);
+		Solver solver = new Solver(solved);
+		solver.setVerbose(false);
+		solver.SATsolve();
+		tasks.add(new Task("load/" + name) {
+			public long run() {
+				try {
+					return new Board(filename).getNumEdges();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		});
+		tasks.add(new Task("deepCopy/" + name) {
+			public long run() {
+				return loaded.deepCopy().getNumEdges();
+			}
+		});
+		tasks.add(new Task("snapshot/" + name) {
+			public long run() {
+				return loaded.snapshot().getNumEdges();
+			}
+		});
+		tasks.add(new Task("applyRules/" + name) {
+			private Solver solver;
+			
+			public void setUp() {
+				solver = new Solver(loaded.deepCopy());
+				solver.setVerbose(false);
+			}
+			
+			public long run() {
+				solver.getBoard().undo(0);
+				return solver.applyRules() ? 1 : 0;
+			}
+		});
+		tasks.add(new Task("checkIfSolved/" + name) {
+			private Solver solver = new Solver(solved);
+			
+			public long run() {
+				return solver.checkIfSolved() ? 1 : 0;
+			}
+		});
+		tasks.add(new Task("SATsolve/" + name) {
+			private Solver solver;
+			
+			public void setUp() {
+				solver = new Solver(loaded.deepCopy());
+				solver.setVerbose(false);
+			}
+			
+			public long run() {
+				solver.getBoard().undo(0);
+				solver.SATsolve(numThreads);
+				return solver.getBoard().getTrailSize();
+			}
+		});
+		return loaded;
+	}
+	
+	/**
+	 * one operation applies the rule once to every cell it applies to, or to
+	 * every node, on each board, boards are fixed half way between the
+	 * loaded state and the state applyRules reaches
+	 */
+	private Task ruleTask(List<Board> boards, final int rule) {
+		final ArrayList<Solver> solvers = new ArrayList<Solver>();
+		final ArrayList<int[]> positions = new ArrayList<int[]>();
+		for (Board loaded : boards) {
+			Board board = loaded.deepCopy();
+			Solver solver = new Solver(board);
+			solver.setVerbose(false);
+			solver.applyRules();
+			board.undo(board.getTrailSize() / 2);
+			solvers.add(solver);
+			positions.add(rulePositions(board, rule));
+		}
+		return new Task("rule/" + Solver.RULE_NAMES[rule]) {
+			public long run() {
+				long changed = 0;
+				for (int k = 0; k < solvers.size(); k++) {
+					Solver solver = solvers.get(k);
+					int[] pos = positions.get(k);
+					int mark = solver.getBoard().getTrailSize();
+					try {
+						for (int i = 0; i < pos.length; i += 2) {
+							if (solver.applyRule(rule, pos[i], pos[i + 1])) {
+								changed++;
+							}
+						}
+					} catch (ConsistencyException e) {
+						e.printStackTrace();
+					}
+					solver.getBoard().undo(mark);
+				}
+				return changed;
+			}
+		};
+	}
+	
+	/* return row and column pairs of the cells or nodes the rule is applied to */
+	private static int[] rulePositions(Board board, int rule) {
+		int[] pos;
+		int size = 0;
+		if (rule == Solver.RULE_FALSE_LOOP) {
+			pos = new int[] { 0, 0 };
+		} else if (rule == Solver.RULE_INCIDENT_EDGES_NODE) {
+			pos = new int[2 * (board.getNumRows() + 1) * (board.getNumCols() + 1)];
+			for (int i = 0; i <= board.getNumRows(); i++) {
+				for (int j = 0; j <= board.getNumCols(); j++) {
+					pos[size++] = i;
+					pos[size++] = j;
+				}
+			}
+		} else {
+			pos = new int[2 * board.getNumRows() * board.getNumCols()];
+			for (int m = 0; m < board.getNumRows(); m++) {
+				for (int n = 0; n < board.getNumCols(); n++) {
+					if (Solver.ruleApplies(rule, board.getConstraint(m, n))) {
+						pos[size++] = m;
+						pos[size++] = n;
+					}
+				}
+			}
+			pos = Arrays.copyOf(pos, size);
+		}
+		return pos;
+	}
+}
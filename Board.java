@@ -1,7 +1,11 @@
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 
@@ -9,9 +13,44 @@ import java.util.Scanner;
  *
  */
 public class Board {
-	private ArrayList<ArrayList<Cell>> cells;
-	private ArrayList<ArrayList<Edge>> edges_h;
-	private ArrayList<ArrayList<Edge>> edges_v;
+	/* marks a cell without a constraint in the clue array */
+	public static final byte NO_CONSTRAINT = -1;
+	/* clue of each puzzle file character, INVALID for characters that are not clues */
+	private static final byte INVALID = -2;
+	private static final byte[] CLUE_VALUES = new byte[128];
+	/* files larger than this are memory-mapped instead of read */
+	private static final long MAP_THRESHOLD = 1 << 20;
+	/* dimensions and tables of the topology built last, boards of the same size share them */
+	private static volatile int[][] lastTopology;
+	private int numRows;
+	private int numCols;
+	/* number of horizontal edges, vertical edge ids start here */
+	private int numEdgesH;
+	private int numEdges;
+	/* cell constraints in row-major order, never modified after load */
+	private byte[] clues;
+	/* edges per chunk of edge state */
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 6);
+	/*
+	 * edge state in chunks of bit words indexed by edge id, an edge is
+	 * negative if known and not positive. chunks are shared with copies
+	 * and copied by the first write to them, owned marks the chunks this
+	 * board may write in place
+	 */
+	private long[][] known;
+	private long[][] positive;
+	private boolean[] owned;
+	/* true for a read-only snapshot */
+	private boolean frozen;
+	/* board topology, built once at load and shared by copies, absent neighbours are -1 */
+	private int[] cellEdges;	// 4 per cell: top, left, bottom, right
+	private int[] nodeEdges;	// 4 per node: left, right, top, bottom
+	private int[] edgeNodes;	// 2 per edge: top or left end first
+	private int[] edgeCells;	// 2 per edge: cell above or left of the edge first
+	/* ids of the edges assigned since load, in assignment order */
+	private int[] trail;
+	private int trailSize;
 	
 	/**
 	 * empty constructor
@@ -20,137 +59,333 @@ public class Board {
 		/* empty */
 	}
 	
-	public Board(String filename) {
-		initList();
-		Scanner scanner;
+	/**
+	 * loads the first puzzle of the file
+	 * 
+	 * @throws IOException
+	 * 		if the file can not be read or holds no valid puzzle
+	 */
+	public Board(String filename) throws IOException {
+		List<Board> boards = readAll(filename, 1);
+		if (boards.isEmpty()) {
+			throw new IOException(filename + ": no puzzle");
+		}
+		Board first = boards.get(0);
+		init(first.numRows, first.numCols, first.clues);
+	}
+	
+	/**
+	 * creates a board without known edges
+	 * 
+	 * @param clues
+	 * 		numRows * numCols constraints in row-major order, NO_CONSTRAINT
+	 * 		for cells without one, the array is kept and must not be
+	 * 		modified afterwards
+	 */
+	public Board(int numRows, int numCols, byte[] clues) {
+		if (numRows < 1 || numCols < 1 || clues.length != numRows * numCols) {
+			throw new IllegalArgumentException("board " + numRows + "x" + numCols + " with " + clues.length + " clues");
+		}
+		for (byte c : clues) {
+			if (c < NO_CONSTRAINT || c > 3) {
+				throw new IllegalArgumentException("clue " + c);
+			}
+		}
+		init(numRows, numCols, clues);
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************* LOADING *******************************************************
+	 ***********************************************************************************************************************/
+	
+	static {
+		Arrays.fill(CLUE_VALUES, INVALID);
+		CLUE_VALUES['?'] = NO_CONSTRAINT;
+		CLUE_VALUES[' '] = NO_CONSTRAINT;
+		CLUE_VALUES['.'] = NO_CONSTRAINT;
+		for (int c = 0; c <= 3; c++) {
+			CLUE_VALUES['0' + c] = (byte) c;
+		}
+	}
+	
+	/**
+	 * reads every puzzle of the file, see readAll(String, int)
+	 */
+	public static List<Board> readAll(String filename) throws IOException {
+		return readAll(filename, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * reads up to limit puzzles of the file. a puzzle is a block of rows,
+	 * one character per cell: 0 to 3 for a constraint, '?', ' ' or '.' for
+	 * none. puzzles are separated by empty lines, shorter rows are padded
+	 * with cells without a constraint
+	 * 
+	 * @throws IOException
+	 * 		if the file can not be read or holds an invalid character
+	 */
+	public static List<Board> readAll(String filename, int limit) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
 		try {
-			scanner = new Scanner(new FileReader(filename));
-			/* init squares */
-			int m = 0;
-			int n = 0;
-			while (scanner.hasNext()) {
-				cells.add(new ArrayList<Cell>());
-				edges_v.add(new ArrayList<Edge>());
-				String row = scanner.nextLine();
-				n = row.length();
-				for (int nn = 0; nn < row.length(); nn++) {
-					char c = row.charAt(nn);
-					if (c != '?' && c != ' ') {
-						int cc = Character.getNumericValue(c);
-						cells.get(m).add(nn, new Cell(m, nn, cc));
-//						System.out.println("Board: new Square(" + m + ", " + nn + ", " + c + ")");
-					} else {
-						cells.get(m).add(nn, new Cell(m, nn));
-//						System.out.println("Board: new Square(" + m + ", " + nn + ")");
-					}
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			ByteBuffer buf;
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(filename + ": file too large");
+			} else if (size > MAP_THRESHOLD) {
+				buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				buf = ByteBuffer.allocate((int) size);
+				while (buf.hasRemaining() && channel.read(buf) >= 0) {
+					/* read until full */
 				}
-				m++;
+				buf.flip();
 			}
-			int i;
-			int j;
-			/* init edges_h */
-			for(i = 0; i < m + 1; i++) {
-				edges_h.add(i, new ArrayList<Edge>());
-				for (j = 0; j < n; j++) {
-					edges_h.get(i).add(j, new Edge(Edge.HORIZONTAL, i, j));
-//					System.out.println("Board: new Edge(" + Edge.ORIENTATION_HORIZONTAL + ", " + i + ", " + j + ")");
+			return parse(buf, filename, limit);
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * reads up to limit puzzles from the bytes of a puzzle file, see
+	 * readAll(String, int)
+	 * 
+	 * @param name
+	 * 		used in error messages in place of a filename
+	 */
+	public static List<Board> readAll(byte[] data, String name, int limit) throws IOException {
+		return parse(ByteBuffer.wrap(data), name, limit);
+	}
+	
+	/* parses the puzzles in buf, name is used in error messages */
+	private static List<Board> parse(ByteBuffer buf, String name, int limit) throws IOException {
+		ArrayList<Board> boards = new ArrayList<Board>();
+		int end = buf.limit();
+		int pos = 0;
+		int start;
+		int lineStart;
+		int lineEnd;
+		int numRows;
+		int numCols;
+		while (pos < end && boards.size() < limit) {
+			/* first pass finds the rows and width of the puzzle starting at pos */
+			start = pos;
+			numRows = 0;
+			numCols = 0;
+			while (pos < end) {
+				lineStart = pos;
+				lineEnd = lineEnd(buf, pos, end);
+				pos = nextLine(buf, lineEnd, end);
+				if (lineEnd == lineStart) {
+					if (numRows > 0) {
+						break;
+					}
+					/* empty lines before a puzzle */
+					start = pos;
+				} else {
+					numRows++;
+					numCols = Math.max(numCols, lineEnd - lineStart);
 				}
 			}
-			/* init edges_v */
-			for(i = 0; i < m; i++) {
-				edges_v.add(i, new ArrayList<Edge>());
-				for (j = 0; j < n + 1; j++) {
-					edges_v.get(i).add(j, new Edge(Edge.VERTICAL, i, j));
-//					System.out.println("Board: new Edge(" + Edge.ORIENTATION_VERTICAL + ", " + i + ", " + j + ")");
+			if (numRows == 0) {
+				break;
+			}
+			/* second pass fills the clues */
+			byte[] clues = new byte[numRows * numCols];
+			Arrays.fill(clues, NO_CONSTRAINT);
+			int p = start;
+			for (int m = 0; m < numRows; m++) {
+				lineEnd = lineEnd(buf, p, end);
+				for (int n = 0; p + n < lineEnd; n++) {
+					int c = buf.get(p + n);
+					byte value = c >= 0 && c < CLUE_VALUES.length ? CLUE_VALUES[c] : INVALID;
+					if (value == INVALID) {
+						throw new IOException(name + ": invalid clue '" + (char) (c & 0xFF) + "' in puzzle "
+								+ (boards.size() + 1) + " row " + (m + 1) + " column " + (n + 1));
+					}
+					clues[m * numCols + n] = value;
 				}
+				p = nextLine(buf, lineEnd, end);
 			}
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			boards.add(new Board(numRows, numCols, clues));
 		}
+		return boards;
 	}
 	
-	private void initList() {
-		cells = new ArrayList<ArrayList<Cell>>();
-		edges_h = new ArrayList<ArrayList<Edge>>();
-		edges_v = new ArrayList<ArrayList<Edge>>();
+	/* return end of the line starting at pos, without its line terminator */
+	private static int lineEnd(ByteBuffer buf, int pos, int end) {
+		int start = pos;
+		while (pos < end && buf.get(pos) != '\n') {
+			pos++;
+		}
+		if (pos > start && buf.get(pos - 1) == '\r') {
+			pos--;
+		}
+		return pos;
 	}
-
-	public ArrayList<ArrayList<Cell>> getCells() {
-		return cells;
+	
+	/* return start of the line after the line ending at lineEnd */
+	private static int nextLine(ByteBuffer buf, int lineEnd, int end) {
+		if (lineEnd < end && buf.get(lineEnd) == '\r') {
+			lineEnd++;
+		}
+		return lineEnd < end ? lineEnd + 1 : end;
 	}
-
-	public void setCells(ArrayList<ArrayList<Cell>> squares) {
-		this.cells = squares;
+	
+	/* allocates edge storage for an m by n board with the passed clues */
+	private void init(int m, int n, byte[] clues) {
+		numRows = m;
+		numCols = n;
+		numEdgesH = (m + 1) * n;
+		numEdges = numEdgesH + m * (n + 1);
+		this.clues = clues;
+		int numWords = (numEdges + 63) >>> 6;
+		int numChunks = (numWords + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		known = new long[numChunks][];
+		positive = new long[numChunks][];
+		owned = new boolean[numChunks];
+		for (int c = 0; c < numChunks; c++) {
+			known[c] = new long[Math.min(CHUNK_WORDS, numWords - c * CHUNK_WORDS)];
+			positive[c] = new long[known[c].length];
+			owned[c] = true;
+		}
+		initTopology();
+	}
+	
+	/* fills the incidence tables of the board, or takes them from the last board of the same size */
+	private void initTopology() {
+		int[][] last = lastTopology;
+		if (last != null && last[0][0] == numRows && last[0][1] == numCols) {
+			cellEdges = last[1];
+			nodeEdges = last[2];
+			edgeNodes = last[3];
+			edgeCells = last[4];
+			return;
+		}
+		int numNodes = getNumNodes();
+		cellEdges = new int[4 * numRows * numCols];
+		nodeEdges = new int[4 * numNodes];
+		edgeNodes = new int[2 * numEdges];
+		edgeCells = new int[2 * numEdges];
+		Arrays.fill(nodeEdges, -1);
+		Arrays.fill(edgeCells, -1);
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				int cell = m * numCols + n;
+				cellEdges[4 * cell] = getEdgeId(m, n, Edge.HORIZONTAL);
+				cellEdges[4 * cell + 1] = getEdgeId(m, n, Edge.VERTICAL);
+				cellEdges[4 * cell + 2] = getEdgeId(m + 1, n, Edge.HORIZONTAL);
+				cellEdges[4 * cell + 3] = getEdgeId(m, n + 1, Edge.VERTICAL);
+				/* the cell is below its top edge and right of its left edge */
+				edgeCells[2 * cellEdges[4 * cell] + 1] = cell;
+				edgeCells[2 * cellEdges[4 * cell + 1] + 1] = cell;
+				edgeCells[2 * cellEdges[4 * cell + 2]] = cell;
+				edgeCells[2 * cellEdges[4 * cell + 3]] = cell;
+			}
+		}
+		for (int id = 0; id < numEdges; id++) {
+			int node = getEdgeM(id) * (numCols + 1) + getEdgeN(id);
+			int other = getEdgeAlignment(id) == Edge.HORIZONTAL ? node + 1 : node + numCols + 1;
+			edgeNodes[2 * id] = node;
+			edgeNodes[2 * id + 1] = other;
+			if (getEdgeAlignment(id) == Edge.HORIZONTAL) {
+				nodeEdges[4 * node + 1] = id;
+				nodeEdges[4 * other] = id;
+			} else {
+				nodeEdges[4 * node + 3] = id;
+				nodeEdges[4 * other + 2] = id;
+			}
+		}
+		lastTopology = new int[][] { { numRows, numCols }, cellEdges, nodeEdges, edgeNodes, edgeCells };
 	}
 	
 	/* return all cells in a single ArrayList */
 	public ArrayList<Cell> getAllCells() {
-		ArrayList<Cell> cells = new ArrayList<Cell>(this.cells.size() * this.cells.get(0).size());
-		for (ArrayList<Cell> cell_row : this.cells) {
-			cells.addAll(cell_row);
+		ArrayList<Cell> cells = new ArrayList<Cell>(numRows * numCols);
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				cells.add(getCell(m, n));
+			}
 		}
 		return cells;
 	}
-
-	public ArrayList<ArrayList<Edge>> getEdges_h() {
-		return edges_h;
-	}
-
-	public void setEdges_h(ArrayList<ArrayList<Edge>> edges_h) {
-		this.edges_h = edges_h;
-	}
-
-	public ArrayList<ArrayList<Edge>> getEdges_v() {
-		return edges_v;
-	}
-
-	public void setEdges_v(ArrayList<ArrayList<Edge>> edges_v) {
-		this.edges_v = edges_v;
-	}
 	
-	/* return all edges in a single ArrayList */
+	/* return all edges in a single ArrayList, horizontal edges first */
 	public ArrayList<Edge> getAllEdges() {
-		ArrayList<Edge> edges = new ArrayList<Edge>((this.edges_h.size() * this.edges_h.get(0).size())
-				+ (this.edges_v.size() * this.edges_v.get(0).size()));
-		for (ArrayList<Edge> edgesH_row : edges_h) {
-			edges.addAll(edgesH_row);
-		}
-		for (ArrayList<Edge> edgesV_row : edges_v) {
-			edges.addAll(edgesV_row);
+		ArrayList<Edge> edges = new ArrayList<Edge>(numEdges);
+		for (int id = 0; id < numEdges; id++) {
+			edges.add(new Edge(this, id));
 		}
 		return edges;
 	}
 	
 	public int getNumRows() {
-		return cells.size();
+		return numRows;
 	}
 	
 	public int getNumCols() {
-		return cells.get(0).size();
+		return numCols;
+	}
+	
+	public int getNumEdges() {
+		return numEdges;
+	}
+	
+	public int getNumCells() {
+		return numRows * numCols;
+	}
+	
+	public int getNumNodes() {
+		return (numRows + 1) * (numCols + 1);
 	}
 	
-	/* return reference to specific cell */
+	/* return cell at position, cells are immutable views of the clue array */
 	public Cell getCell(int m, int n) {
-		return this.cells.get(m).get(n);
+		checkCell(m, n);
+		byte c = clues[m * numCols + n];
+		if (c == NO_CONSTRAINT) {
+			return new Cell(m, n);
+		} else {
+			return new Cell(m, n, c);
+		}
+	}
+	
+	/* return true if cell at position has a constraint */
+	public boolean hasConstraint(int m, int n) {
+		checkCell(m, n);
+		return clues[m * numCols + n] != NO_CONSTRAINT;
+	}
+	
+	/* return constraint of cell at position, NO_CONSTRAINT if it has none */
+	public int getConstraint(int m, int n) {
+		checkCell(m, n);
+		return clues[m * numCols + n];
+	}
+	
+	private void checkCell(int m, int n) {
+		if (m < 0 || m >= numRows || n < 0 || n >= numCols) {
+			throw new IndexOutOfBoundsException("cell " + m + " " + n);
+		}
 	}
 	
 	/* return all empty positions */
 	public ArrayList<BoardPosition> getEmptyPositions() {
-		ArrayList<Edge> emptyEdges = this.getEmptyEdges();
-		ArrayList<BoardPosition> emptyPos = new ArrayList<BoardPosition>(emptyEdges.size());
-		for (Edge edge : emptyEdges) {
-			emptyPos.add(new BoardPosition(edge.getM(), edge.getN(), edge.getAlignment()));
+		ArrayList<BoardPosition> emptyPos = new ArrayList<BoardPosition>(numEdges);
+		for (int id = 0; id < numEdges; id++) {
+			if (!isKnown(id)) {
+				emptyPos.add(new BoardPosition(getEdgeM(id), getEdgeN(id), getEdgeAlignment(id)));
+			}
 		}
 		return emptyPos;
 	}
 	
 	/* returns all empty edges in one ArrayList */
 	public ArrayList<Edge> getEmptyEdges() {
-		ArrayList<Edge> allEdges = this.getAllEdges();
-		ArrayList<Edge> emptyEdges = new ArrayList<Edge>(allEdges.size());
-		for (Edge edge : allEdges) {
-			if (edge.isEmpty()) {
-				emptyEdges.add(edge);
+		ArrayList<Edge> emptyEdges = new ArrayList<Edge>(numEdges);
+		for (int id = 0; id < numEdges; id++) {
+			if (!isKnown(id)) {
+				emptyEdges.add(new Edge(this, id));
 			}
 		}
 		return emptyEdges;
@@ -161,120 +396,318 @@ public class Board {
 		return getEdge(bPos.getM(), bPos.getN(), bPos.getAlignment());
 	}
 	
-	/* return edge at position */
+	/* return edge at position, the edge is a view of this board's edge state */
 	public Edge getEdge(int m, int n, char alignment) {
-		if (alignment == Edge.HORIZONTAL) {
-			return this.edges_h.get(m).get(n);
-		} else {
-			return this.edges_v.get(m).get(n);
-		}
+		return new Edge(this, getEdgeId(m, n, alignment));
 	}
 	
 	/* return the edges surrounding the cell */
 	public ArrayList<Edge> getIncidentEdges(Cell cell) {
-		int m = cell.getRow();
-		int n = cell.getCol();
+		int id = cell.getRow() * numCols + cell.getCol();
 		ArrayList<Edge> edges = new ArrayList<Edge>(4);
 		/* add each edge */
-		edges.add(getEdge(m, n, Edge.HORIZONTAL));
-		edges.add(getEdge(m, n, Edge.VERTICAL));
-		edges.add(getEdge(m+1, n, Edge.HORIZONTAL));
-		edges.add(getEdge(m, n+1, Edge.VERTICAL));
+		for (int k = 0; k < 4; k++) {
+			edges.add(new Edge(this, getCellEdge(id, k)));
+		}
 		return edges;
 	}
 	
-	/** 
+	/***********************************************************************************************************************
+	 ****************************************************** TOPOLOGY *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * cells are numbered row by row, nodes likewise with numCols + 1 nodes
+	 * per row
+	 * 
+	 * @return id of the k-th edge of the cell, k = 0..3 for top, left,
+	 * bottom and right
+	 */
+	public int getCellEdge(int cell, int k) {
+		return cellEdges[4 * cell + k];
+	}
+	
+	/**
+	 * @return id of the k-th edge of the node, k = 0..3 for left, right,
+	 * top and bottom, or -1 if the node is on the border on that side
+	 */
+	public int getNodeEdge(int node, int k) {
+		return nodeEdges[4 * node + k];
+	}
+	
+	/* return the node at the top or left end of the edge for end 0, the other end for end 1 */
+	public int getEdgeNode(int id, int end) {
+		return edgeNodes[2 * id + end];
+	}
+	
+	/* return the cell above or left of the edge for side 0, below or right for side 1, or -1 if outside the board */
+	public int getEdgeCell(int id, int side) {
+		return edgeCells[2 * id + side];
+	}
+	
+	/* return constraint of the cell with the passed id, NO_CONSTRAINT if it has none */
+	public int getConstraint(int cell) {
+		return clues[cell];
+	}
+	
+	/***********************************************************************************************************************
+	 ***************************************************** EDGE STATE ******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * horizontal edges are numbered row by row first, followed by the
+	 * vertical edges
+	 *
+	 * @return id of the edge at position
+	 */
+	public int getEdgeId(int m, int n, char alignment) {
+		if (alignment == Edge.HORIZONTAL) {
+			if (m < 0 || m > numRows || n < 0 || n >= numCols) {
+				throw new IndexOutOfBoundsException("edge " + m + " " + n + " " + alignment);
+			}
+			return m * numCols + n;
+		} else {
+			if (m < 0 || m >= numRows || n < 0 || n > numCols) {
+				throw new IndexOutOfBoundsException("edge " + m + " " + n + " " + alignment);
+			}
+			return numEdgesH + m * (numCols + 1) + n;
+		}
+	}
+	
+	public char getEdgeAlignment(int id) {
+		return id < numEdgesH ? Edge.HORIZONTAL : Edge.VERTICAL;
+	}
+	
+	public int getEdgeM(int id) {
+		return id < numEdgesH ? id / numCols : (id - numEdgesH) / (numCols + 1);
+	}
+	
+	public int getEdgeN(int id) {
+		return id < numEdgesH ? id % numCols : (id - numEdgesH) % (numCols + 1);
+	}
+	
+	public boolean isKnown(int id) {
+		return (known[id >>> CHUNK_SHIFT][(id >>> 6) & (CHUNK_WORDS - 1)] & (1L << id)) != 0;
+	}
+	
+	public boolean isPositive(int id) {
+		return (positive[id >>> CHUNK_SHIFT][(id >>> 6) & (CHUNK_WORDS - 1)] & (1L << id)) != 0;
+	}
+	
+	public boolean isNegative(int id) {
+		return isKnown(id) && !isPositive(id);
+	}
+	
+	/* return Edge.EMPTY, Edge.POSITIVE or Edge.NEGATIVE */
+	public int getEdgeValue(int id) {
+		if (!isKnown(id)) {
+			return Edge.EMPTY;
+		}
+		return isPositive(id) ? Edge.POSITIVE : Edge.NEGATIVE;
+	}
+	
+	public void setEdgeValue(int id, int value) {
+		int chunk = id >>> CHUNK_SHIFT;
+		if (!owned[chunk]) {
+			own(chunk);
+		}
+		long bit = 1L << id;
+		int word = (id >>> 6) & (CHUNK_WORDS - 1);
+		long[] k = known[chunk];
+		long[] p = positive[chunk];
+		if (value != Edge.EMPTY && (k[word] & bit) == 0) {
+			pushTrail(id);
+		}
+		if (value == Edge.EMPTY) {
+			k[word] &= ~bit;
+			p[word] &= ~bit;
+		} else if (value == Edge.POSITIVE) {
+			k[word] |= bit;
+			p[word] |= bit;
+		} else {
+			k[word] |= bit;
+			p[word] &= ~bit;
+		}
+	}
+	
+	/* copies a chunk shared with other boards before it is written */
+	private void own(int chunk) {
+		if (frozen) {
+			throw new UnsupportedOperationException("board snapshot is read-only");
+		}
+		known[chunk] = known[chunk].clone();
+		positive[chunk] = positive[chunk].clone();
+		owned[chunk] = true;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** TRAIL ********************************************************
+	 ***********************************************************************************************************************/
+	
+	/* records an edge going from unknown to known */
+	private void pushTrail(int id) {
+		if (trail == null) {
+			trail = new int[numEdges];
+		} else if (trailSize == trail.length) {
+			trail = Arrays.copyOf(trail, trailSize * 2);
+		}
+		trail[trailSize++] = id;
+	}
+	
+	/**
+	 * the trail size can be used as a mark to undo all later assignments
+	 * 
+	 * @return number of assignments on the trail
+	 */
+	public int getTrailSize() {
+		return trailSize;
+	}
+	
+	/* return id of the i-th edge assigned */
+	public int getTrailEdge(int i) {
+		return trail[i];
+	}
+	
+	/* resets every edge assigned after mark to unknown */
+	public void undo(int mark) {
+		while (trailSize > mark) {
+			int id = trail[--trailSize];
+			int chunk = id >>> CHUNK_SHIFT;
+			if (!owned[chunk]) {
+				own(chunk);
+			}
+			known[chunk][(id >>> 6) & (CHUNK_WORDS - 1)] &= ~(1L << id);
+			positive[chunk][(id >>> 6) & (CHUNK_WORDS - 1)] &= ~(1L << id);
+		}
+	}
+	
+	/**
+	 * clues and topology are never modified, so they are shared with the
+	 * copy, the edge state chunks are shared until either board writes
+	 * them. the trail is not copied. taking a copy of a board that is not
+	 * a snapshot counts as a write to it
+	 *
 	 * @return by-value copy of board
 	 */
 	public Board deepCopy() {
 		Board copy = new Board();
-		copy.setCells(new ArrayList<ArrayList<Cell>>(this.cells.size()));
-		copy.setEdges_h(new ArrayList<ArrayList<Edge>>(this.edges_h.size()));
-		copy.setEdges_v(new ArrayList<ArrayList<Edge>>(this.edges_v.size()));
-		for (ArrayList<Cell> row_s : this.cells) {
-			copy.getCells().add(new ArrayList<Cell>(row_s.size()));
-			for (Cell square : row_s) {
-				copy.getCells().get(this.cells.indexOf(row_s)).add(square.deepCopy());
-			}
+		copy.numRows = this.numRows;
+		copy.numCols = this.numCols;
+		copy.numEdgesH = this.numEdgesH;
+		copy.numEdges = this.numEdges;
+		copy.clues = this.clues;
+		copy.cellEdges = this.cellEdges;
+		copy.nodeEdges = this.nodeEdges;
+		copy.edgeNodes = this.edgeNodes;
+		copy.edgeCells = this.edgeCells;
+		copy.known = this.known.clone();
+		copy.positive = this.positive.clone();
+		copy.owned = new boolean[owned.length];
+		if (!frozen) {
+			Arrays.fill(owned, false);
 		}
-		for (ArrayList<Edge> row_h : this.edges_h) {
-			copy.getEdges_h().add(new ArrayList<Edge>(row_h.size()));
-			for (Edge edge_h : row_h) {
-				copy.getEdges_h().get(this.edges_h.indexOf(row_h)).add(edge_h.deepCopy());
-			}
-		}	
-		for (ArrayList<Edge> row_v : this.edges_v) {
-			copy.getEdges_v().add(new ArrayList<Edge>(row_v.size()));
-			for (Edge edge_v : row_v) {
-				copy.getEdges_v().get(this.edges_v.indexOf(row_v)).add(edge_v.deepCopy());
-			}
+		return copy;
+	}
+	
+	/**
+	 * the snapshot shares every chunk of edge state with this board until
+	 * this board writes it, so taking one costs a pointer per chunk and
+	 * taking one of a snapshot costs nothing. setEdgeValue and undo throw
+	 * UnsupportedOperationException on a snapshot, deepCopy of a snapshot
+	 * gives a writable board
+	 *
+	 * @return read-only copy of the edge state of the board
+	 */
+	public Board snapshot() {
+		if (frozen) {
+			return this;
 		}
+		Board copy = deepCopy();
+		copy.frozen = true;
 		return copy;
 	}
 	
+	/* return true if the board is a read-only snapshot */
+	public boolean isSnapshot() {
+		return frozen;
+	}
+	
+	/* returns board symbol for edge, c if positive, 'x' if negative unless neat */
+	private char edgeSymbol(int id, char c, boolean neat) {
+		if (isPositive(id)) {
+			return c;
+		} else if (isKnown(id) && !neat) {
+			return 'x';
+		} else {
+			return ' ';
+		}
+	}
+	
+	/* return number of chars written by render */
+	public int getRenderSize() {
+		return (2 * numRows + 2) * (2 * numCols + 4);
+	}
+	
 	/**
-	 * returns description of board state in user-friendly format
+	 * writes the board in user-friendly format in a single pass, one line
+	 * at a time through a line buffer
+	 * 
+	 * @param neat
+	 * 		if true negative edges are left blank instead of shown as 'x'
 	 */
-	public String toString() {
-		String board = "  ";
-		/* print column labels */
-		for (int k = 0; k < cells.get(0).size(); k++) {
-			board += " " + k % 10;
-		}
-		board += "\n" + "  +";
-		/* first row of horizontal edges */
-		for (Edge edge_h : edges_h.get(0)) {
-			if (edge_h.isPositive()) {
-				board += "-";
-			} else if (edge_h.isNegative()) {
-				board += "x";
-			} else {
-				board += " ";
+	public void render(Appendable out, boolean neat) throws IOException {
+		char[] line = new char[2 * numCols + 4];
+		CharBuffer view = CharBuffer.wrap(line);
+		int pos;
+		/* column labels */
+		line[0] = ' ';
+		line[1] = ' ';
+		for (int n = 0; n < numCols; n++) {
+			line[2 + 2 * n] = ' ';
+			line[3 + 2 * n] = (char) ('0' + n % 10);
+		}
+		line[2 + 2 * numCols] = '\n';
+		out.append(view, 0, 3 + 2 * numCols);
+		for (int m = 0; m <= numRows; m++) {
+			/* row of horizontal edges */
+			line[0] = ' ';
+			line[1] = ' ';
+			line[2] = '+';
+			pos = 3;
+			for (int n = 0; n < numCols; n++) {
+				line[pos++] = edgeSymbol(getEdgeId(m, n, Edge.HORIZONTAL), '-', neat);
+				line[pos++] = '+';
 			}
-			board += "+";
-		}
-		board += "\n";
-		for (ArrayList<Cell> row : cells) {
-			/* print row label */
-			board += cells.indexOf(row) % 10 + " ";
-			/* first vertical edge of row */
-			if (edges_v.get(cells.indexOf(row)).get(0).isPositive()) {
-				board += "|"; 
-			} else if (edges_v.get(cells.indexOf(row)).get(0).isNegative()) {
-				board += "x";
-			} else {
-				board += " ";
+			line[pos++] = '\n';
+			out.append(view, 0, pos);
+			if (m == numRows) {
+				break;
 			}
-			/* for each square in the row */
-			for (Cell square : row) {
-				/* row of constraints and vertical edges */
-				if (square.hasConstraint()) {
-					board += square.getConstraint();
-				} else {
-					board += " ";
-				}
-				if (edges_v.get(cells.indexOf(row)).get(square.getCol() + 1).isPositive()) {
-					board += "|";
-				} else if (edges_v.get(cells.indexOf(row)).get(square.getCol() + 1).isNegative()) {
-					board += "x";
-				} else {
-					board += " ";
-				}
-			}	
-			board += "\n" + "  +";
-			/* row of horizontal edges */
-			for (Edge edge_h : edges_h.get(cells.indexOf(row) + 1)) {
-				if (edge_h.isPositive()) {
-					board += "-";
-				} else if (edge_h.isNegative()) {
-					board += "x";
-				} else {
-					board += " ";
-				}
-				board += "+";
+			/* row label, then constraints between vertical edges */
+			line[0] = (char) ('0' + m % 10);
+			line[1] = ' ';
+			line[2] = edgeSymbol(getEdgeId(m, 0, Edge.VERTICAL), '|', neat);
+			pos = 3;
+			for (int n = 0; n < numCols; n++) {
+				line[pos++] = hasConstraint(m, n) ? (char) ('0' + getConstraint(m, n)) : ' ';
+				line[pos++] = edgeSymbol(getEdgeId(m, n + 1, Edge.VERTICAL), '|', neat);
 			}
-			board += "\n";
+			line[pos++] = '\n';
+			out.append(view, 0, pos);
+		}
+	}
+	
+	/**
+	 * returns description of board state in user-friendly format
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder(getRenderSize());
+		try {
+			render(sb, false);
+		} catch (IOException e) {
+			/* a StringBuilder does not throw */
+			e.printStackTrace();
 		}
-		return board;
+		return sb.toString();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,995 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * conflict driven clause learning solver for a board, with one variable
+ * per edge. cell constraints and node degrees are encoded as clauses up
+ * front, the single loop constraint is added lazily by cutting off every
+ * sub-loop found in a model. a search may be given a budget of conflicts
+ * and a deadline, once either runs out it gives up and reports UNKNOWN.
+ *
+ * with switchable clues every clue gets a selector variable that must be
+ * true for the clauses of the clue to hold, and each search assumes the
+ * selectors of the clues enabled true and those of the others false. the
+ * learned clauses hold for every choice of clues, so one solver answers
+ * a series of searches over puzzles differing in their clues
+ *
+ * @author Kyler
+ *
+ */
+public class CDCLSolver {
+	/* count returned when the budget ran out before the count was known */
+	public static final int UNKNOWN = -1;
+	private static final int TRUE = 1;
+	private static final int FALSE = -1;
+	private static final int UNDEF = 0;
+	/* conflicts before the first restart, scaled by the luby sequence */
+	private static final int RESTART_BASE = 100;
+	private static final double VAR_DECAY = 0.95;
+	/* learned clauses kept before the first reduction, as a share of the clauses of the encoding, and its growth per reduction */
+	private static final double LEARNT_SHARE = 1.0 / 3.0;
+	private static final double LEARNT_GROWTH = 1.1;
+	/* learned clauses spanning at most this many decision levels are never deleted */
+	private static final int GLUE_LBD = 2;
+	private Board board;
+	/* one variable per edge, followed by the selectors of the clues if they are switchable */
+	private int numVars;
+	private int numEdges;
+	/* selector variable of each cell, -1 for a cell without clue or if clues are not switchable */
+	private int[] selector;
+	/* literal assumed by every search for each selector, in order of the cells, decided one per level before any edge */
+	private int[] assumptions;
+	private int numAssumptions;
+	private int numRows;
+	private int numCols;
+	/* edges incident to each node */
+	private int[][] nodeEdges;
+	/* clauses as literal arrays, literal 2*edge is the edge positive and 2*edge+1 negative */
+	private ArrayList<int[]> clauses;
+	/* number of decision levels each learned clause spanned when learned, 0 for every other clause */
+	private int[] lbd;
+	private int numLearnts;
+	private double maxLearnts;
+	/* scratch stamps of the decision levels counted by computeLbd */
+	private int[] levelStamp;
+	private int stamp;
+	/* clause indices watching each literal */
+	private int[][] watches;
+	private int[] numWatches;
+	/* assignment of each variable, TRUE, FALSE or UNDEF */
+	private int[] value;
+	private int[] level;
+	/* clause that implied each variable, -1 for decisions and level 0 facts */
+	private int[] reason;
+	private int[] trail;
+	private int trailSize;
+	private int propHead;
+	private int[] trailLim;
+	private int decisionLevel;
+	/* VSIDS activities and a max-heap of variables ordered by activity */
+	private double[] activity;
+	private double varInc = 1.0;
+	private int[] heap;
+	private int heapSize;
+	private int[] heapIndex;
+	/* last value of each variable, used as its next decision */
+	private boolean[] phase;
+	private boolean[] seen;
+	/* false once the clauses are known to be unsatisfiable */
+	private boolean ok = true;
+	private long conflicts;
+	private long decisions;
+	private long loopCuts;
+	/* solutions found by every solver of a parallel count, null when counting alone */
+	private AtomicInteger sharedCount;
+	private int countLimit = Integer.MAX_VALUE;
+	/* lowest index of a solver of the shared count that found a solution, and the index of this one */
+	private AtomicInteger sharedFirst;
+	private int sharedIndex;
+	/* true once countSolutions found a solution */
+	private boolean found;
+	/* conflicts allowed before giving up, and System.nanoTime() after which the search gives up if timed */
+	private long conflictLimit = Long.MAX_VALUE;
+	private long deadline;
+	private boolean timed;
+	/* true once the search gave up on the budget */
+	private boolean exhausted;
+	
+	public CDCLSolver(Board board) {
+		this(board, false);
+	}
+	
+	/**
+	 * @param switchableClues
+	 * 		true to give every clue a selector, the clues are all enabled
+	 * 		until setClueEnabled says otherwise
+	 */
+	public CDCLSolver(Board board, boolean switchableClues) {
+		this.board = board;
+		this.numEdges = board.getNumEdges();
+		this.numVars = numEdges;
+		this.numRows = board.getNumRows();
+		this.numCols = board.getNumCols();
+		this.selector = new int[board.getNumCells()];
+		this.assumptions = new int[board.getNumCells()];
+		for (int cell = 0; cell < selector.length; cell++) {
+			selector[cell] = -1;
+			if (switchableClues && board.getConstraint(cell) != Board.NO_CONSTRAINT) {
+				selector[cell] = numVars++;
+				assumptions[numAssumptions++] = 2 * selector[cell];
+			}
+		}
+		this.clauses = new ArrayList<int[]>();
+		this.lbd = new int[64];
+		this.watches = new int[2 * numVars][];
+		this.numWatches = new int[2 * numVars];
+		for (int lit = 0; lit < 2 * numVars; lit++) {
+			watches[lit] = new int[4];
+		}
+		this.value = new int[numVars];
+		this.level = new int[numVars];
+		this.reason = new int[numVars];
+		this.trail = new int[numVars];
+		this.trailLim = new int[numVars + 1];
+		this.activity = new double[numVars];
+		this.heap = new int[numVars];
+		this.heapIndex = new int[numVars];
+		this.phase = new boolean[numVars];
+		this.seen = new boolean[numVars];
+		this.levelStamp = new int[numVars + 1];
+		Arrays.fill(reason, -1);
+		for (int v = 0; v < numVars; v++) {
+			heapIndex[v] = -1;
+			heapInsert(v);
+		}
+		encode();
+		maxLearnts = Math.max(clauses.size() * LEARNT_SHARE, numVars);
+	}
+	
+	public long getConflicts() {
+		return conflicts;
+	}
+	
+	public long getDecisions() {
+		return decisions;
+	}
+	
+	public long getLoopCuts() {
+		return loopCuts;
+	}
+	
+	public long getConflictLimit() {
+		return conflictLimit;
+	}
+	
+	/* sets the number of conflicts after which the search gives up, counted over every model of countSolutions */
+	public void setConflictLimit(long conflictLimit) {
+		this.conflictLimit = conflictLimit;
+	}
+	
+	/* sets the System.nanoTime() after which the search gives up */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+		this.timed = true;
+	}
+	
+	/* return true if the last search gave up because the conflicts or the time ran out */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+	
+	/* enables or disables the clue of the cell for the next searches, clues must be switchable */
+	public void setClueEnabled(int cell, boolean enabled) {
+		if (selector[cell] < 0) {
+			throw new IllegalArgumentException("no switchable clue at cell " + cell);
+		}
+		/* selectors follow the edges in the order of their assumptions */
+		assumptions[selector[cell] - numEdges] = enabled ? 2 * selector[cell] : 2 * selector[cell] + 1;
+	}
+	
+	/* return true if the clue of the cell holds, a cell without clue has none */
+	private boolean isClueEnabled(int cell) {
+		if (board.getConstraint(cell) == Board.NO_CONSTRAINT) {
+			return false;
+		}
+		return selector[cell] < 0 || value[selector[cell]] == TRUE;
+	}
+	
+	/**
+	 * shares the count of countSolutions with other solvers, each stops
+	 * searching once the count reaches the limit. a solver with a lower
+	 * index than every solver that found a solution goes on until it finds
+	 * one or there is none, so the lowest index holding a solution always
+	 * finds it
+	 * 
+	 * @param first
+	 * 		lowest index of a solver that found a solution, shared by all of
+	 * 		them and starting at Integer.MAX_VALUE
+	 */
+	public void setSharedCount(AtomicInteger sharedCount, AtomicInteger first, int index) {
+		this.sharedCount = sharedCount;
+		this.sharedFirst = first;
+		this.sharedIndex = index;
+	}
+	
+	/***********************************************************************************************************************
+	 ****************************************************** ENCODING *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* adds the clauses of every cell and node, and the edges already known */
+	private void encode() {
+		int[] edges;
+		nodeEdges = new int[(numRows + 1) * (numCols + 1)][];
+		for (int i = 0; i <= numRows; i++) {
+			for (int j = 0; j <= numCols; j++) {
+				edges = new int[4];
+				int count = 0;
+				if (j != 0) {
+					edges[count++] = board.getEdgeId(i, j-1, Edge.HORIZONTAL);
+				}
+				if (j != numCols) {
+					edges[count++] = board.getEdgeId(i, j, Edge.HORIZONTAL);
+				}
+				if (i != 0) {
+					edges[count++] = board.getEdgeId(i-1, j, Edge.VERTICAL);
+				}
+				if (i != numRows) {
+					edges[count++] = board.getEdgeId(i, j, Edge.VERTICAL);
+				}
+				edges = Arrays.copyOf(edges, count);
+				nodeEdges[i * (numCols + 1) + j] = edges;
+				/* degree of every node is 0 or 2 */
+				forbidCounts(edges, 1 << 1 | 1 << 3 | 1 << 4, -1);
+			}
+		}
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				if (board.hasConstraint(m, n)) {
+					edges = new int[] { board.getEdgeId(m, n, Edge.HORIZONTAL), board.getEdgeId(m, n, Edge.VERTICAL),
+							board.getEdgeId(m+1, n, Edge.HORIZONTAL), board.getEdgeId(m, n+1, Edge.VERTICAL) };
+					/* every count except the constraint is forbidden, unless the selector of a switchable clue is false */
+					int cell = m * numCols + n;
+					forbidCounts(edges, 0x1F & ~(1 << board.getConstraint(m, n)), selector[cell] < 0 ? -1 : 2 * selector[cell] + 1);
+				}
+			}
+		}
+		/* the loop has at least one edge */
+		int[] any = new int[numEdges];
+		for (int id = 0; id < numEdges; id++) {
+			any[id] = 2 * id;
+		}
+		addClause(any);
+		for (int id = 0; id < numEdges; id++) {
+			if (board.isKnown(id)) {
+				addClause(new int[] { board.isPositive(id) ? 2 * id : 2 * id + 1 });
+			}
+		}
+	}
+	
+	/* adds one clause per assignment of the edges whose number of positive edges is in the forbidden bit set, each holding the guard literal unless it is -1 */
+	private void forbidCounts(int[] edges, int forbidden, int guard) {
+		for (int mask = 0; mask < 1 << edges.length; mask++) {
+			if ((forbidden & (1 << Integer.bitCount(mask))) != 0) {
+				int[] clause = new int[guard < 0 ? edges.length : edges.length + 1];
+				for (int k = 0; k < edges.length; k++) {
+					/* the clause is violated by exactly this assignment */
+					clause[k] = ((mask >> k) & 1) != 0 ? 2 * edges[k] + 1 : 2 * edges[k];
+				}
+				if (guard >= 0) {
+					clause[edges.length] = guard;
+				}
+				addClause(clause);
+			}
+		}
+	}
+	
+	/* adds a clause at decision level 0 */
+	private void addClause(int[] lits) {
+		if (!ok) {
+			return;
+		}
+		int size = 0;
+		int[] clause = new int[lits.length];
+		for (int lit : lits) {
+			if (litValue(lit) == TRUE) {
+				return;
+			} else if (litValue(lit) == UNDEF) {
+				clause[size++] = lit;
+			}
+		}
+		if (size == 0) {
+			ok = false;
+		} else if (size == 1) {
+			enqueue(clause[0], -1);
+			ok = propagate() < 0;
+		} else {
+			attach(Arrays.copyOf(clause, size), 0);
+		}
+	}
+	
+	/* stores the clause, watching its first two literals, lbd is 0 for a clause that is never deleted */
+	private int attach(int[] clause, int clauseLbd) {
+		int ci = clauses.size();
+		clauses.add(clause);
+		if (ci == lbd.length) {
+			lbd = Arrays.copyOf(lbd, 2 * ci);
+		}
+		lbd[ci] = clauseLbd;
+		if (clauseLbd > 0) {
+			numLearnts++;
+		}
+		watch(clause[0], ci);
+		watch(clause[1], ci);
+		return ci;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** SEARCH *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * searches for a single loop satisfying every clause, and writes it to
+	 * the board
+	 *
+	 * @return true if the board was solved, false if it has no solution or
+	 * 		the budget ran out
+	 */
+	public boolean solve() {
+		if (!findModel()) {
+			return false;
+		}
+		writeModel();
+		return true;
+	}
+	
+	/**
+	 * counts the solutions up to limit, each solution found is blocked by a
+	 * clause saying one of its edges is negative and the search goes on. a
+	 * single loop holding every edge of another loop is that loop, so the
+	 * clause excludes no other solution. the first solution is written to
+	 * the board
+	 *
+	 * @return number of solutions found, at most limit, or UNKNOWN if the
+	 * 		budget ran out first
+	 */
+	public int countSolutions(int limit) {
+		countLimit = limit;
+		int count = 0;
+		while (count < limit && findModel()) {
+			count++;
+			if (count == 1) {
+				writeModel();
+				found = true;
+				if (sharedFirst != null) {
+					int first;
+					do {
+						first = sharedFirst.get();
+					} while (sharedIndex < first && !sharedFirst.compareAndSet(first, sharedIndex));
+				}
+			}
+			if (sharedCount != null && sharedCount.incrementAndGet() >= limit) {
+				break;
+			}
+			int[] clause = new int[numEdges];
+			int size = 0;
+			for (int id = 0; id < numEdges; id++) {
+				if (value[id] == TRUE) {
+					clause[size++] = 2 * id + 1;
+				}
+			}
+			cancelUntil(0);
+			addClause(Arrays.copyOf(clause, size));
+		}
+		return exhausted ? UNKNOWN : count;
+	}
+	
+	/**
+	 * blocks the solution held by the passed board, a board of the same
+	 * size, so the search only finds other solutions. once the solution of
+	 * a puzzle is excluded, the puzzle is unique if solve finds nothing
+	 * without running out of budget
+	 */
+	public void excludeSolution(Board solution) {
+		int[] clause = new int[numEdges];
+		int size = 0;
+		for (int id = 0; id < numEdges; id++) {
+			if (solution.isPositive(id)) {
+				clause[size++] = 2 * id + 1;
+			}
+		}
+		cancelUntil(0);
+		addClause(Arrays.copyOf(clause, size));
+	}
+	
+	/* writes the full assignment to the board */
+	private void writeModel() {
+		for (int id = 0; id < numEdges; id++) {
+			board.setEdgeValue(id, value[id] == TRUE ? Edge.POSITIVE : Edge.NEGATIVE);
+		}
+	}
+	
+	/* return true if another solver of a shared count reached the limit, or if the budget ran out */
+	private boolean stopped() {
+		if (conflicts >= conflictLimit || (timed && System.nanoTime() - deadline > 0)) {
+			exhausted = true;
+			return true;
+		}
+		if (sharedCount == null || sharedCount.get() < countLimit) {
+			return false;
+		}
+		return found || sharedFirst.get() < sharedIndex;
+	}
+	
+	/**
+	 * searches for a full assignment forming a single loop, starting from
+	 * level 0 so assumptions changed since the last search are taken
+	 *
+	 * @return true if one was found, false if there is none, the shared
+	 * 		count reached the limit or the budget ran out
+	 */
+	private boolean findModel() {
+		cancelUntil(0);
+		exhausted = false;
+		int restarts = 0;
+		long conflictsLeft = RESTART_BASE * luby(restarts);
+		int confl;
+		int next;
+		while (ok) {
+			confl = propagate();
+			if (confl >= 0) {
+				conflicts++;
+				conflictsLeft--;
+				if (decisionLevel == 0) {
+					ok = false;
+				} else {
+					learn(confl);
+				}
+				if (stopped()) {
+					return false;
+				}
+			} else if (conflictsLeft <= 0) {
+				/* restart */
+				cancelUntil(0);
+				if (numLearnts >= maxLearnts) {
+					reduceLearnts();
+				}
+				conflictsLeft = RESTART_BASE * luby(++restarts);
+			} else {
+				next = -1;
+				/* the assumptions take the first levels, one each even if it is already true */
+				while (next < 0 && decisionLevel < numAssumptions) {
+					next = assumptions[decisionLevel];
+					if (litValue(next) == FALSE) {
+						/* no solution with these clues, the clauses may still hold for others */
+						return false;
+					} else if (litValue(next) == TRUE) {
+						trailLim[decisionLevel++] = trailSize;
+						next = -1;
+					}
+				}
+				if (next < 0) {
+					next = pickBranch();
+				}
+				if (next >= 0) {
+					decisions++;
+					trailLim[decisionLevel++] = trailSize;
+					enqueue(next, -1);
+				} else if (checkSingleLoop()) {
+					/* full assignment with a single loop */
+					return true;
+				} else if (stopped()) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/* returns value of the literal */
+	private int litValue(int lit) {
+		int v = value[lit >> 1];
+		return (lit & 1) == 0 ? v : -v;
+	}
+	
+	private void watch(int lit, int clause) {
+		if (numWatches[lit] == watches[lit].length) {
+			watches[lit] = Arrays.copyOf(watches[lit], 2 * numWatches[lit]);
+		}
+		watches[lit][numWatches[lit]++] = clause;
+	}
+	
+	/* makes the literal true */
+	private void enqueue(int lit, int from) {
+		int v = lit >> 1;
+		value[v] = (lit & 1) == 0 ? TRUE : FALSE;
+		level[v] = decisionLevel;
+		reason[v] = from;
+		trail[trailSize++] = lit;
+	}
+	
+	/**
+	 * propagates every literal on the trail through the two watched
+	 * literals of each clause
+	 *
+	 * @return index of a conflicting clause, or -1
+	 */
+	private int propagate() {
+		while (propHead < trailSize) {
+			int falseLit = trail[propHead++] ^ 1;
+			int[] ws = watches[falseLit];
+			int n = numWatches[falseLit];
+			int i = 0;
+			int j = 0;
+			while (i < n) {
+				int ci = ws[i++];
+				int[] c = clauses.get(ci);
+				/* keep the false literal at position 1 */
+				if (c[0] == falseLit) {
+					c[0] = c[1];
+					c[1] = falseLit;
+				}
+				if (litValue(c[0]) == TRUE) {
+					ws[j++] = ci;
+					continue;
+				}
+				/* look for a new literal to watch */
+				boolean found = false;
+				for (int k = 2; k < c.length; k++) {
+					if (litValue(c[k]) != FALSE) {
+						c[1] = c[k];
+						c[k] = falseLit;
+						watch(c[1], ci);
+						found = true;
+						break;
+					}
+				}
+				if (found) {
+					continue;
+				}
+				ws[j++] = ci;
+				if (litValue(c[0]) == FALSE) {
+					/* conflict, keep the remaining watches */
+					while (i < n) {
+						ws[j++] = ws[i++];
+					}
+					numWatches[falseLit] = j;
+					propHead = trailSize;
+					return ci;
+				}
+				enqueue(c[0], ci);
+			}
+			numWatches[falseLit] = j;
+		}
+		return -1;
+	}
+	
+	/* analyzes the conflict to its first unique implication point, learns the clause and backjumps */
+	private void learn(int confl) {
+		int[] learnt = new int[decisionLevel + 16];
+		int size = 1;
+		int pathC = 0;
+		int p = -1;
+		int idx = trailSize - 1;
+		do {
+			int[] c = clauses.get(confl);
+			for (int j = (p == -1) ? 0 : 1; j < c.length; j++) {
+				int q = c[j];
+				int v = q >> 1;
+				if (!seen[v] && level[v] > 0) {
+					seen[v] = true;
+					bumpActivity(v);
+					if (level[v] >= decisionLevel) {
+						pathC++;
+					} else {
+						if (size == learnt.length) {
+							learnt = Arrays.copyOf(learnt, 2 * size);
+						}
+						learnt[size++] = q;
+					}
+				}
+			}
+			/* next literal of the current level on the trail */
+			while (!seen[trail[idx] >> 1]) {
+				idx--;
+			}
+			p = trail[idx--];
+			confl = reason[p >> 1];
+			seen[p >> 1] = false;
+			pathC--;
+		} while (pathC > 0);
+		learnt[0] = p ^ 1;
+		int learntLbd = computeLbd(learnt, size);
+		/* backjump to the second highest level in the clause, keeping that literal at position 1 */
+		int btLevel = 0;
+		for (int k = 1; k < size; k++) {
+			seen[learnt[k] >> 1] = false;
+			if (level[learnt[k] >> 1] > btLevel) {
+				btLevel = level[learnt[k] >> 1];
+				int tmp = learnt[1];
+				learnt[1] = learnt[k];
+				learnt[k] = tmp;
+			}
+		}
+		varInc /= VAR_DECAY;
+		cancelUntil(btLevel);
+		if (size == 1) {
+			enqueue(learnt[0], -1);
+		} else {
+			int[] clause = Arrays.copyOf(learnt, size);
+			enqueue(clause[0], attach(clause, learntLbd));
+		}
+	}
+	
+	/* return number of distinct decision levels of the first size literals, at least 1 */
+	private int computeLbd(int[] lits, int size) {
+		stamp++;
+		int count = 0;
+		for (int k = 0; k < size; k++) {
+			int lvl = level[lits[k] >> 1];
+			if (levelStamp[lvl] != stamp) {
+				levelStamp[lvl] = stamp;
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * deletes the learned clauses satisfied at level 0 and the half of the
+	 * others spanning the most decision levels, keeping those of at most
+	 * GLUE_LBD levels. run at level 0, where no clause is the reason of an
+	 * assignment still used by learn, so clauses can be renumbered and the
+	 * watches rebuilt from the first two literals of each clause
+	 */
+	private void reduceLearnts() {
+		long[] keys = new long[numLearnts];
+		int numKeys = 0;
+		boolean[] delete = new boolean[clauses.size()];
+		for (int ci = 0; ci < clauses.size(); ci++) {
+			if (lbd[ci] > 0 && isSatisfied(clauses.get(ci))) {
+				delete[ci] = true;
+			} else if (lbd[ci] > GLUE_LBD) {
+				/* most levels first, older first among equal levels */
+				keys[numKeys++] = (long) (Integer.MAX_VALUE - lbd[ci]) << 32 | ci;
+			}
+		}
+		Arrays.sort(keys, 0, numKeys);
+		for (int k = 0; k < numKeys / 2; k++) {
+			delete[(int) keys[k]] = true;
+		}
+		int size = 0;
+		numLearnts = 0;
+		for (int ci = 0; ci < clauses.size(); ci++) {
+			if (!delete[ci]) {
+				clauses.set(size, clauses.get(ci));
+				lbd[size] = lbd[ci];
+				numLearnts += lbd[size] > 0 ? 1 : 0;
+				size++;
+			}
+		}
+		while (clauses.size() > size) {
+			clauses.remove(clauses.size() - 1);
+		}
+		Arrays.fill(numWatches, 0);
+		for (int ci = 0; ci < size; ci++) {
+			watch(clauses.get(ci)[0], ci);
+			watch(clauses.get(ci)[1], ci);
+		}
+		for (int k = 0; k < trailSize; k++) {
+			reason[trail[k] >> 1] = -1;
+		}
+		maxLearnts *= LEARNT_GROWTH;
+	}
+	
+	/* return true if a literal of the clause is true */
+	private boolean isSatisfied(int[] clause) {
+		for (int lit : clause) {
+			if (litValue(lit) == TRUE) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/* unassigns every variable above the level */
+	private void cancelUntil(int lvl) {
+		if (decisionLevel <= lvl) {
+			return;
+		}
+		for (int k = trailSize - 1; k >= trailLim[lvl]; k--) {
+			int v = trail[k] >> 1;
+			phase[v] = value[v] == TRUE;
+			value[v] = UNDEF;
+			reason[v] = -1;
+			if (heapIndex[v] < 0) {
+				heapInsert(v);
+			}
+		}
+		trailSize = trailLim[lvl];
+		propHead = trailSize;
+		decisionLevel = lvl;
+	}
+	
+	/* returns the unassigned variable with the highest activity as a literal of its saved phase, or -1 */
+	private int pickBranch() {
+		while (heapSize > 0) {
+			int v = heapRemoveMax();
+			if (value[v] == UNDEF) {
+				return phase[v] ? 2 * v : 2 * v + 1;
+			}
+		}
+		return -1;
+	}
+	
+	/* returns the i-th element of the luby sequence 1 1 2 1 1 2 4 ... */
+	private static long luby(int i) {
+		int size = 1;
+		int seq = 0;
+		while (size < i + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		long x = i;
+		while (size - 1 != x) {
+			size = (size - 1) >> 1;
+			seq--;
+			x = x % size;
+		}
+		return 1L << seq;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** LOOPS ********************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * checks the positive edges of the full assignment form one loop, every
+	 * node has degree 0 or 2 so each component is a loop. every sub-loop
+	 * that can not be the whole solution is cut off by a cut clause
+	 *
+	 * @return true if the assignment is a solution
+	 */
+	private boolean checkSingleLoop() {
+		boolean[] visited = new boolean[numEdges];
+		ArrayList<int[]> loops = new ArrayList<int[]>();
+		int[] stack = new int[numEdges];
+		for (int id = 0; id < numEdges; id++) {
+			if (value[id] == TRUE && !visited[id]) {
+				int size = 0;
+				int[] loop = new int[numEdges];
+				int stackSize = 0;
+				visited[id] = true;
+				stack[stackSize++] = id;
+				while (stackSize > 0) {
+					int e = stack[--stackSize];
+					loop[size++] = e;
+					for (int end = 0; end < 2; end++) {
+						for (int next : nodeEdges[board.getEdgeNode(e, end)]) {
+							if (value[next] == TRUE && !visited[next]) {
+								visited[next] = true;
+								stack[stackSize++] = next;
+							}
+						}
+					}
+				}
+				loops.add(Arrays.copyOf(loop, size));
+			}
+		}
+		if (loops.size() == 1) {
+			return true;
+		}
+		if (loops.isEmpty()) {
+			/* no positive edge, a solution has at least one */
+			int[] clause = new int[numEdges];
+			for (int id = 0; id < numEdges; id++) {
+				clause[id] = 2 * id;
+			}
+			cancelUntil(0);
+			addClause(clause);
+			return false;
+		}
+		for (int[] loop : loops) {
+			if (satisfiesConstraints(loop) && satisfiesFacts(loop)) {
+				/* the sub-loop on its own is a solution, level 0 facts already agree with it */
+				for (int id = 0; id < numEdges; id++) {
+					if (level[id] > 0) {
+						value[id] = FALSE;
+					}
+				}
+				for (int e : loop) {
+					value[e] = TRUE;
+				}
+				return true;
+			}
+		}
+		cancelUntil(0);
+		for (int[] loop : loops) {
+			loopCuts++;
+			addClause(cutClause(loop, loops));
+		}
+		return false;
+	}
+	
+	/* returns true if the loop alone meets every enabled cell constraint */
+	private boolean satisfiesConstraints(int[] loop) {
+		boolean[] inLoop = new boolean[numEdges];
+		for (int e : loop) {
+			inLoop[e] = true;
+		}
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				if (isClueEnabled(m * numCols + n)) {
+					int count = 0;
+					count += inLoop[board.getEdgeId(m, n, Edge.HORIZONTAL)] ? 1 : 0;
+					count += inLoop[board.getEdgeId(m, n, Edge.VERTICAL)] ? 1 : 0;
+					count += inLoop[board.getEdgeId(m+1, n, Edge.HORIZONTAL)] ? 1 : 0;
+					count += inLoop[board.getEdgeId(m, n+1, Edge.VERTICAL)] ? 1 : 0;
+					if (count != board.getConstraint(m, n)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+	
+	/* returns true if every edge true at level 0 is on the loop and no edge false at level 0 is */
+	private boolean satisfiesFacts(int[] loop) {
+		boolean[] inLoop = new boolean[numEdges];
+		for (int e : loop) {
+			inLoop[e] = true;
+		}
+		for (int id = 0; id < numEdges; id++) {
+			if (level[id] == 0 && value[id] != UNDEF && (value[id] == TRUE) != inLoop[id]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * the nodes of the loop and the nodes on one side of it split the
+	 * board in two. a single loop holding an edge of the loop and an edge of
+	 * another loop on the other side crosses between them, so the clause
+	 * says one of the two edges is negative or an edge between the sides is
+	 * positive. the side is taken from the cells inside the loop, it holds
+	 * every sub-loop through them, not only this one
+	 */
+	private int[] cutClause(int[] loop, ArrayList<int[]> loops) {
+		int numNodes = nodeEdges.length;
+		boolean[] inLoop = new boolean[numEdges];
+		for (int e : loop) {
+			inLoop[e] = true;
+		}
+		/* cells reached from outside the board without crossing the loop are outside it */
+		int numCells = numRows * numCols;
+		boolean[] outside = new boolean[numCells];
+		int[] stack = new int[numCells];
+		int stackSize = 0;
+		for (int id = 0; id < numEdges; id++) {
+			for (int side = 0; side < 2; side++) {
+				int cell = board.getEdgeCell(id, side);
+				if (!inLoop[id] && board.getEdgeCell(id, 1 - side) < 0 && !outside[cell]) {
+					outside[cell] = true;
+					stack[stackSize++] = cell;
+				}
+			}
+		}
+		while (stackSize > 0) {
+			int cell = stack[--stackSize];
+			for (int k = 0; k < 4; k++) {
+				int e = board.getCellEdge(cell, k);
+				int next = board.getEdgeCell(e, 0) == cell ? board.getEdgeCell(e, 1) : board.getEdgeCell(e, 0);
+				if (!inLoop[e] && next >= 0 && !outside[next]) {
+					outside[next] = true;
+					stack[stackSize++] = next;
+				}
+			}
+		}
+		/* the loop and the nodes inside it, the corners of the inside cells */
+		boolean[] side = new boolean[numNodes];
+		for (int cell = 0; cell < numCells; cell++) {
+			if (!outside[cell]) {
+				for (int k = 0; k < 4; k++) {
+					int e = board.getCellEdge(cell, k);
+					side[board.getEdgeNode(e, 0)] = true;
+					side[board.getEdgeNode(e, 1)] = true;
+				}
+			}
+		}
+		/* an edge of another loop outside, else every other loop is inside and the side is the loop and the outside */
+		int other = -1;
+		for (int[] next : loops) {
+			if (next != loop && !side[board.getEdgeNode(next[0], 0)]) {
+				other = next[0];
+				break;
+			}
+		}
+		if (other < 0) {
+			for (int node = 0; node < numNodes; node++) {
+				side[node] = !side[node];
+			}
+			for (int e : loop) {
+				side[board.getEdgeNode(e, 0)] = true;
+				side[board.getEdgeNode(e, 1)] = true;
+			}
+			other = loops.get(loops.get(0) == loop ? 1 : 0)[0];
+		}
+		int[] clause = new int[numEdges + 2];
+		int size = 0;
+		clause[size++] = 2 * loop[0] + 1;
+		clause[size++] = 2 * other + 1;
+		for (int id = 0; id < numEdges; id++) {
+			if (side[board.getEdgeNode(id, 0)] != side[board.getEdgeNode(id, 1)]) {
+				clause[size++] = 2 * id;
+			}
+		}
+		return Arrays.copyOf(clause, size);
+	}
+	
+	/***********************************************************************************************************************
+	 ****************************************************** ACTIVITY *******************************************************
+	 ***********************************************************************************************************************/
+	
+	private void bumpActivity(int v) {
+		activity[v] += varInc;
+		if (activity[v] > 1e100) {
+			/* rescale every activity */
+			for (int k = 0; k < numVars; k++) {
+				activity[k] *= 1e-100;
+			}
+			varInc *= 1e-100;
+		}
+		if (heapIndex[v] >= 0) {
+			heapUp(heapIndex[v]);
+		}
+	}
+	
+	private void heapInsert(int v) {
+		heapIndex[v] = heapSize;
+		heap[heapSize++] = v;
+		heapUp(heapSize - 1);
+	}
+	
+	private int heapRemoveMax() {
+		int max = heap[0];
+		heapIndex[max] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return max;
+	}
+	
+	private void heapUp(int i) {
+		int v = heap[i];
+		while (i > 0 && activity[heap[(i - 1) >> 1]] < activity[v]) {
+			heap[i] = heap[(i - 1) >> 1];
+			heapIndex[heap[i]] = i;
+			i = (i - 1) >> 1;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+	
+	private void heapDown(int i) {
+		int v = heap[i];
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+				child++;
+			}
+			if (activity[heap[child]] <= activity[v]) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+}
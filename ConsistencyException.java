@@ -6,7 +6,18 @@
 public class ConsistencyException extends Exception {
 	
 	private static final long serialVersionUID = 1L;
+	/* what the position of a signalled contradiction refers to */
+	public static final int BOARD = 0;
+	public static final int EDGE = 1;
+	public static final int CELL = 2;
+	public static final int NODE = 3;
 	private String message = null;
+	/* contradiction signalled by a rule, formatted into message on demand */
+	private transient Board board;
+	private int kind;
+	private int position;
+	private String tag;
+	private int value;
 	
 	public ConsistencyException() {
 		super();
@@ -21,7 +32,84 @@ public class ConsistencyException extends Exception {
 		super(cause);
 	}
 	
-	public String toString() {
+	private ConsistencyException(boolean writableStackTrace) {
+		super(null, null, false, writableStackTrace);
+	}
+	
+	/**
+	 * creates an exception without a stack trace, a Solver keeps one and
+	 * refills it with signal for every contradiction, so a failed probe
+	 * allocates nothing
+	 */
+	static ConsistencyException preallocated() {
+		return new ConsistencyException(false);
+	}
+	
+	/**
+	 * records a contradiction, the message is only formatted if asked for
+	 * and must be asked for before the next contradiction is signalled
+	 * 
+	 * @param kind
+	 * 		BOARD, EDGE, CELL or NODE
+	 * @param position
+	 * 		id of the edge, cell or node
+	 * @param tag
+	 * 		rule tag
+	 * @param value
+	 * 		value the rule attempted to set an edge to
+	 * @return this exception
+	 */
+	ConsistencyException signal(Board board, int kind, int position, String tag, int value) {
+		this.board = board;
+		this.kind = kind;
+		this.position = position;
+		this.tag = tag;
+		this.value = value;
+		this.message = null;
+		return this;
+	}
+	
+	public int getKind() {
+		return kind;
+	}
+	
+	public int getPosition() {
+		return position;
+	}
+	
+	/* return rule tag of the signalled contradiction, null if the exception was built from a message */
+	public String getTag() {
+		return tag;
+	}
+	
+	public String getMessage() {
+		if (message == null && tag != null) {
+			message = format();
+		}
 		return message;
+	}
+	
+	/* formats the signalled contradiction the way rules used to build their messages */
+	private String format() {
+		int numCols = board.getNumCols();
+		switch (kind) {
+		case EDGE:
+			return ">> Solver: ConsistencyException @ " + new Edge(board, position).toString()
+					+ "\n\t" + "-> rule tag: " + tag
+					+ "\n\t" + "-> attemped: " + Integer.toString(value);
+		case CELL:
+			return ">> Solver: ConsistencyException @ " + position / numCols + " " + position % numCols + " s"
+					+ "\n\t" + "-> rule tag: " + tag;
+		case NODE:
+			return ">> Solver: ConsistencyException @ " + position / (numCols + 1) + " " + position % (numCols + 1) + " n"
+					+ "\n\t" + "-> rule tag: " + tag;
+		default:
+			return ">> Solver: ConsistencyException"
+					+ "\n\t" + "-> rule tag: " + tag;
+		}
+	}
+	
+	public String toString() {
+		return getMessage();
 	}	
 }
@@ -0,0 +1,300 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * read-only view of a binary puzzle corpus. the file is memory-mapped and
+ * any puzzle can be fetched through the offset index without reading the
+ * ones before it. only absolute reads are made on the mapping, so a Corpus
+ * can be shared by threads
+ *
+ * layout, big-endian:
+ * 	header	int magic, int version, int count, long index offset
+ * 	record	char rows, char cols, byte flags, clues at 3 bits per cell
+ * 			(clue + 1, row-major, low bits first), if flags has SOLVED the
+ * 			positive edges as a bitset in edge id order
+ * 	index	long offset of each record
+ *
+ * @author Kyler
+ *
+ */
+public class Corpus {
+	public static final String EXTENSION = ".slc";
+	private static final int MAGIC = 0x534C4B43;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 20;
+	private static final int RECORD_HEADER_SIZE = 5;
+	/* record flag, the record holds a solution */
+	private static final int SOLVED = 1;
+	private static final int BITS_PER_CLUE = 3;
+	private ByteBuffer buf;
+	private int count;
+	private int indexOffset;
+	
+	/**
+	 * maps the corpus file
+	 *
+	 * @throws IOException
+	 * 		if the file can not be read or is not a corpus
+	 */
+	public Corpus(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(filename + ": file too large");
+			}
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			/* the mapping stays valid after the channel is closed */
+			file.close();
+		}
+		if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+			throw new IOException(filename + ": not a puzzle corpus");
+		}
+		if (buf.getInt(4) != VERSION) {
+			throw new IOException(filename + ": unsupported corpus version " + buf.getInt(4));
+		}
+		count = buf.getInt(8);
+		long index = buf.getLong(12);
+		if (count < 0 || index < HEADER_SIZE || index + 8L * count > buf.limit()) {
+			throw new IOException(filename + ": corrupt corpus index");
+		}
+		indexOffset = (int) index;
+	}
+	
+	/* return number of puzzles in the corpus */
+	public int size() {
+		return count;
+	}
+	
+	/* return offset of the i-th record */
+	private int offset(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("puzzle " + i + " of " + count);
+		}
+		return (int) buf.getLong(indexOffset + 8 * i);
+	}
+	
+	/**
+	 * @return the i-th puzzle without known edges
+	 */
+	public Board getBoard(int i) {
+		int offset = offset(i);
+		int numRows = buf.getChar(offset);
+		int numCols = buf.getChar(offset + 2);
+		byte[] clues = new byte[numRows * numCols];
+		int pos = offset + RECORD_HEADER_SIZE;
+		for (int c = 0; c < clues.length; c++) {
+			clues[c] = (byte) (getBits(pos, c * BITS_PER_CLUE, BITS_PER_CLUE) - 1);
+		}
+		return new Board(numRows, numCols, clues);
+	}
+	
+	public boolean hasSolution(int i) {
+		return (buf.get(offset(i) + 4) & SOLVED) != 0;
+	}
+	
+	/**
+	 * @return the i-th puzzle with every edge of its solution known, null if
+	 * 		the corpus holds no solution for it
+	 */
+	public Board getSolution(int i) {
+		if (!hasSolution(i)) {
+			return null;
+		}
+		Board board = getBoard(i);
+		int pos = offset(i) + RECORD_HEADER_SIZE + bytes(board.getNumCells() * BITS_PER_CLUE);
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			board.setEdgeValue(id, getBits(pos, id, 1) != 0 ? Edge.POSITIVE : Edge.NEGATIVE);
+		}
+		return board;
+	}
+	
+	/* return the len bits starting at bit of the bit string at pos, low bits first */
+	private int getBits(int pos, int bit, int len) {
+		int value = 0;
+		for (int k = 0; k < len; k++) {
+			int b = bit + k;
+			if ((buf.get(pos + (b >>> 3)) & (1 << (b & 7))) != 0) {
+				value |= 1 << k;
+			}
+		}
+		return value;
+	}
+	
+	/* return bytes needed for bits */
+	private static int bytes(int bits) {
+		return (bits + 7) >>> 3;
+	}
+	
+	/**
+	 * writes a corpus file, puzzles are appended with add and the index is
+	 * written by close
+	 *
+	 * @author Kyler
+	 */
+	public static class Builder {
+		private String filename;
+		private DataOutputStream out;
+		private long[] offsets = new long[64];
+		private int count;
+		private long pos;
+		/* bit string of the record being written */
+		private byte[] bits = new byte[64];
+		
+		public Builder(String filename) throws IOException {
+			this.filename = filename;
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+			/* header is rewritten by close */
+			out.write(new byte[HEADER_SIZE]);
+			pos = HEADER_SIZE;
+		}
+		
+		/**
+		 * appends the clues of the board and, if solved is true, its positive
+		 * edges as the solution
+		 */
+		public void add(Board board, boolean solved) throws IOException {
+			if (board.getNumRows() > Character.MAX_VALUE || board.getNumCols() > Character.MAX_VALUE) {
+				throw new IOException(filename + ": board " + board.getNumRows() + "x" + board.getNumCols()
+						+ " too large");
+			}
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+			}
+			offsets[count++] = pos;
+			out.writeChar(board.getNumRows());
+			out.writeChar(board.getNumCols());
+			out.writeByte(solved ? SOLVED : 0);
+			pos += RECORD_HEADER_SIZE;
+			int numCells = board.getNumCells();
+			clear(numCells * BITS_PER_CLUE);
+			for (int c = 0; c < numCells; c++) {
+				setBits(c * BITS_PER_CLUE, board.getConstraint(c) + 1);
+			}
+			writeBits(numCells * BITS_PER_CLUE);
+			if (solved) {
+				clear(board.getNumEdges());
+				for (int id = 0; id < board.getNumEdges(); id++) {
+					if (board.isPositive(id)) {
+						setBits(id, 1);
+					}
+				}
+				writeBits(board.getNumEdges());
+			}
+		}
+		
+		/* return number of puzzles added */
+		public int size() {
+			return count;
+		}
+		
+		/* zeroes the first len bits of the bit string */
+		private void clear(int len) {
+			if (bytes(len) > bits.length) {
+				bits = new byte[bytes(len)];
+			} else {
+				Arrays.fill(bits, 0, bytes(len), (byte) 0);
+			}
+		}
+		
+		/* ors value into the bit string starting at bit, low bits first */
+		private void setBits(int bit, int value) {
+			for (int b = bit; value != 0; b++, value >>>= 1) {
+				if ((value & 1) != 0) {
+					bits[b >>> 3] |= 1 << (b & 7);
+				}
+			}
+		}
+		
+		private void writeBits(int len) throws IOException {
+			out.write(bits, 0, bytes(len));
+			pos += bytes(len);
+		}
+		
+		/* writes the index and the header and closes the file */
+		public void close() throws IOException {
+			try {
+				if (pos > Integer.MAX_VALUE - 8L * count) {
+					throw new IOException(filename + ": corpus too large");
+				}
+				for (int i = 0; i < count; i++) {
+					out.writeLong(offsets[i]);
+				}
+			} finally {
+				out.close();
+			}
+			RandomAccessFile file = new RandomAccessFile(filename, "rw");
+			try {
+				file.writeInt(MAGIC);
+				file.writeInt(VERSION);
+				file.writeInt(count);
+				file.writeLong(pos);
+			} finally {
+				file.close();
+			}
+		}
+	}
+	
+	/***********************************************************************************************************************
+	 ****************************************************** CONVERSION *****************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * writes every puzzle of the text files to a new corpus, without
+	 * solutions
+	 *
+	 * @return number of puzzles written
+	 */
+	public static int pack(List<File> files, String filename) throws IOException {
+		Builder builder = new Builder(filename);
+		try {
+			for (File file : files) {
+				for (Board board : Board.readAll(file.getPath())) {
+					builder.add(board, false);
+				}
+			}
+		} finally {
+			builder.close();
+		}
+		return builder.size();
+	}
+	
+	/**
+	 * writes the puzzles of the corpus as text, separated by empty lines,
+	 * solutions are not written
+	 *
+	 * @return number of puzzles written
+	 */
+	public int unpack(Writer writer) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				writer.write('\n');
+			}
+			writeClues(getBoard(i), writer);
+		}
+		return count;
+	}
+	
+	/* writes one row of clues per line, '?' for cells without a constraint */
+	public static void writeClues(Board board, Writer writer) throws IOException {
+		char[] row = new char[board.getNumCols() + 1];
+		row[board.getNumCols()] = '\n';
+		for (int m = 0; m < board.getNumRows(); m++) {
+			for (int n = 0; n < board.getNumCols(); n++) {
+				row[n] = board.hasConstraint(m, n) ? (char) ('0' + board.getConstraint(m, n)) : '?';
+			}
+			writer.write(row);
+		}
+	}
+}
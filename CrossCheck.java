@@ -0,0 +1,104 @@
+import java.util.Random;
+
+/**
+ * counts the solutions of random boards with the Solver, on one thread and
+ * on several, and with the FrontierSolver and prints every board they
+ * disagree on. each board gets random clues and a few edges already set to
+ * random values, so the counts of boards holding known edges are checked
+ * as well as those of bare puzzles
+ *
+ * usage: CrossCheck [-size rows cols] [-count n] [-threads n] [-seed n]
+ *
+ * @author Kyler
+ *
+ */
+public class CrossCheck {
+	/* counts are compared up to this many solutions */
+	private static final int LIMIT = 100000;
+	private int numRows = 4;
+	private int numCols = 4;
+	private int count = 100;
+	private int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private long seed = System.nanoTime();
+	
+	public static void main(String[] args) {
+		CrossCheck check = new CrossCheck();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-size")) {
+					check.numRows = Integer.parseInt(args[++i]);
+					check.numCols = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-count")) {
+					check.count = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					check.numThreads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					check.seed = Long.parseLong(args[++i]);
+				} else {
+					check.count = -1;
+				}
+			}
+		} catch (RuntimeException e) {
+			check.count = -1;
+		}
+		if (check.count < 1 || check.numThreads < 1 || check.numRows < 1 || check.numCols < 1) {
+			System.out.println("usage: CrossCheck [-size rows cols] [-count n] [-threads n] [-seed n]");
+			return;
+		}
+		check.run();
+	}
+	
+	/**
+	 * checks count random boards and prints the number of mismatches
+	 *
+	 * @return number of boards the solvers disagree on
+	 */
+	public int run() {
+		Random random = new Random(seed);
+		int numMismatches = 0;
+		for (int k = 0; k < count; k++) {
+			byte[] clues = new byte[numRows * numCols];
+			for (int c = 0; c < clues.length; c++) {
+				clues[c] = random.nextInt(3) == 0 ? (byte) random.nextInt(4) : Board.NO_CONSTRAINT;
+			}
+			Board board = new Board(numRows, numCols, clues);
+			int numKnown = random.nextInt(4);
+			for (int e = 0; e < numKnown; e++) {
+				board.setEdgeValue(random.nextInt(board.getNumEdges()), random.nextBoolean() ? Edge.POSITIVE : Edge.NEGATIVE);
+			}
+			if (!check(board, k + 1)) {
+				numMismatches++;
+			}
+		}
+		System.out.println(">> CrossCheck: " + count + " boards, " + numMismatches + " mismatches"
+				+ "\n\t" + "-> Seed: " + seed);
+		return numMismatches;
+	}
+	
+	/* return true if the solvers agree on the board, else prints it */
+	private boolean check(Board board, int number) {
+		long expected = Math.min(new FrontierSolver(board.deepCopy()).countSolutions().longValue(), LIMIT);
+		int[] counts = new int[2];
+		boolean valid = true;
+		for (int t = 0; t < counts.length; t++) {
+			Board copy = board.deepCopy();
+			Solver solver = new Solver(copy);
+			solver.setVerbose(false);
+			counts[t] = solver.countSolutions(LIMIT, t == 0 ? 1 : numThreads);
+			/* the first solution found is left on the board, it keeps the edges set before */
+			if (counts[t] > 0) {
+				valid &= solver.checkIfSolved();
+				for (int id = 0; id < board.getNumEdges(); id++) {
+					valid &= !board.isKnown(id) || board.isPositive(id) == copy.isPositive(id);
+				}
+			}
+		}
+		if (counts[0] == expected && counts[1] == expected && valid) {
+			return true;
+		}
+		System.out.println(">> CrossCheck: board " + number + ", frontier " + expected + ", solver " + counts[0]
+				+ ", " + numThreads + " threads " + counts[1] + (valid ? "" : ", invalid solution"));
+		System.out.print("\n" + board);
+		return false;
+	}
+}
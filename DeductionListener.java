@@ -0,0 +1,28 @@
+/**
+ * receives every edge a Solver deduces, including the deductions of probes
+ * that are undone afterwards, listeners are called on the solving thread
+ * and should return quickly
+ * 
+ * @author Kyler
+ *
+ */
+public interface DeductionListener {
+	/* listener that ignores every deduction, the default of a Solver */
+	public static final DeductionListener NONE = new DeductionListener() {
+		public void deduced(Edge edge, int value, String tag) {
+			/* empty */
+		}
+	};
+	
+	/**
+	 * called after the edge was set
+	 * 
+	 * @param edge
+	 * 		the deduced edge
+	 * @param value
+	 * 		Edge.POSITIVE or Edge.NEGATIVE
+	 * @param tag
+	 * 		rule tag of the deduction
+	 */
+	public void deduced(Edge edge, int value, String tag);
+}
@@ -9,97 +9,95 @@ public class Edge {
 	public static final int EMPTY = 0;
 	public static final int POSITIVE = 1;
 	public static final int NEGATIVE = -1;
+	/* the board holding this edge's state */
+	private Board board;
+	private int id;
 	private char alignment;
 	private int m;
 	private int n;
-	private int value;
-	
-	public Edge() {
-		
-	}
 	
 	/**
-	 * constructor
+	 * constructor, the edge reads and writes its value through the board
 	 */
-	public Edge(char alignment, int m, int n) {
-		this.alignment = alignment;
-		this.m = m;
-		this.n = n;
-		this.value = EMPTY;
+	public Edge(Board board, int id) {
+		this.board = board;
+		this.id = id;
+		this.alignment = board.getEdgeAlignment(id);
+		this.m = board.getEdgeM(id);
+		this.n = board.getEdgeN(id);
+	}
+	
+	public int getId() {
+		return id;
 	}
-
+	
 	public char getAlignment() {
 		return alignment;
 	}
-
-	public void setAlignment(char alignment) {
-		this.alignment = alignment;
-	}
-
+	
 	public int getM() {
 		return m;
 	}
-
-	public void setM(int m) {
-		this.m = m;
-	}
-
+	
 	public int getN() {
 		return n;
 	}
-
-	public void setN(int n) {
-		this.n = n;
-	}
-
+	
 	public boolean isPositive() {
-		return (value == POSITIVE);
+		return board.isPositive(id);
 	}
 	
 	public boolean isNegative() {
-		return (value == NEGATIVE);
+		return board.isNegative(id);
 	}
 	
 	public boolean isEmpty() {
-		return (value == EMPTY);
+		return !board.isKnown(id);
 	}
 	
 	public int getValue() {
-		return value;
+		return board.getEdgeValue(id);
 	}
 	
 	public void setValue(int value) {
-		this.value = value;
+		board.setEdgeValue(id, value);
 	}
 	
 	/* set edge to positive */
 	public void setPositive() {
-		this.value = POSITIVE;
+		setValue(POSITIVE);
 	}
 	
 	/* set edge to negative */
 	public void setNegative() {
-		this.value = NEGATIVE;
+		setValue(NEGATIVE);
 	}
 	
 	/* 'flip' edge value */
 	public void toggleValue() {
-		if (value == EMPTY || value == NEGATIVE) {
-			value = POSITIVE;
+		if (isPositive()) {
+			setValue(NEGATIVE);
 		} else {
-			value = NEGATIVE;
+			setValue(POSITIVE);
 		}
 	}
 	
 	/* true if edge is positive or negative */
 	public boolean isKnown() {
-		return !(value == EMPTY);
+		return board.isKnown(id);
+	}
+	
+	/* edges are equal if they refer to the same position of the same board */
+	public boolean equals(Object o) {
+		if (!(o instanceof Edge)) {
+			return false;
+		}
+		Edge edge = (Edge) o;
+		return edge.board == this.board && edge.id == this.id;
 	}
 	
-	public Edge deepCopy() {
-		Edge copy = new Edge(this.alignment, this.m, this.n);
-		copy.value = this.value;
-		return copy;
+	public int hashCode() {
+		return id;
 	}
 	
 	public String toString() {
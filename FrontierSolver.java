@@ -0,0 +1,378 @@
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * counts and enumerates the solutions of a board by dynamic programming
+ * over a frontier swept across the nodes in row-major order. each step
+ * decides the right and down edge of one node, a state holds only what
+ * the rest of the sweep depends on:
+ * 	- the edge crossing the frontier in every column and the edge to the
+ * 	  right of the last node, labelled so the two ends of each path
+ * 	  share a label
+ * 	- the positive edges still needed by each cell whose edges are not
+ * 	  all decided
+ * 	- whether the loop has been closed
+ * states are canonicalized and merged, so the work grows with the number
+ * of states on one frontier and not with the number of solutions. edges
+ * already known on the board are respected
+ *
+ * @author Kyler
+ *
+ */
+public class FrontierSolver {
+	/* remaining count of a cell without a constraint */
+	private static final byte FREE = -1;
+	private Board board;
+	private int numRows;
+	private int numCols;
+	/* state layout: labels of the column slots and the right slot, remaining counts of the column cells, closed flag */
+	private int right;
+	private int remStart;
+	private int closedIndex;
+	private int stateSize;
+	/* largest number of states on one frontier of the last sweep */
+	private int maxStates;
+	
+	/**
+	 * one frontier state, compared by value
+	 *
+	 * @author Kyler
+	 */
+	private static final class State {
+		private final byte[] data;
+		private final int hash;
+		
+		public State(byte[] data) {
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+		
+		public int hashCode() {
+			return hash;
+		}
+		
+		public boolean equals(Object o) {
+			return o instanceof State && ((State) o).hash == hash && Arrays.equals(((State) o).data, data);
+		}
+	}
+	
+	public FrontierSolver(Board board) {
+		this.board = board;
+		this.numRows = board.getNumRows();
+		this.numCols = board.getNumCols();
+		this.right = numCols + 1;
+		this.remStart = numCols + 2;
+		this.closedIndex = remStart + numCols + 1;
+		this.stateSize = closedIndex + 1;
+	}
+	
+	public int getMaxStates() {
+		return maxStates;
+	}
+	
+	/**
+	 * @return exact number of solutions of the board
+	 */
+	public BigInteger countSolutions() {
+		HashMap<State, BigInteger> layer = new HashMap<State, BigInteger>();
+		HashMap<State, BigInteger> next = new HashMap<State, BigInteger>();
+		HashMap<State, BigInteger> swap;
+		layer.put(initialState(), BigInteger.ONE);
+		maxStates = 1;
+		State target;
+		BigInteger count;
+		for (int node = 0; node < board.getNumNodes(); node++) {
+			next.clear();
+			for (Map.Entry<State, BigInteger> entry : layer.entrySet()) {
+				for (int choice = 0; choice < 4; choice++) {
+					target = step(entry.getKey(), node, choice);
+					if (target != null) {
+						count = next.get(target);
+						next.put(target, count == null ? entry.getValue() : count.add(entry.getValue()));
+					}
+				}
+			}
+			swap = layer;
+			layer = next;
+			next = swap;
+			maxStates = Math.max(maxStates, layer.size());
+		}
+		BigInteger total = BigInteger.ZERO;
+		for (Map.Entry<State, BigInteger> entry : layer.entrySet()) {
+			if (isAccepting(entry.getKey())) {
+				total = total.add(entry.getValue());
+			}
+		}
+		return total;
+	}
+	
+	/**
+	 * enumerates the solutions lazily, each as a new board with every edge
+	 * known. the frontiers of the whole sweep are kept so that the
+	 * enumeration never enters a state without a solution below it, which
+	 * takes memory for every frontier rather than one
+	 */
+	public Iterator<Board> solutions() {
+		int numNodes = board.getNumNodes();
+		/* states reachable on each frontier */
+		ArrayList<HashSet<State>> live = new ArrayList<HashSet<State>>(numNodes + 1);
+		HashSet<State> layer = new HashSet<State>();
+		layer.add(initialState());
+		live.add(layer);
+		maxStates = 1;
+		State target;
+		for (int node = 0; node < numNodes; node++) {
+			HashSet<State> next = new HashSet<State>();
+			for (State state : layer) {
+				for (int choice = 0; choice < 4; choice++) {
+					target = step(state, node, choice);
+					if (target != null) {
+						next.add(target);
+					}
+				}
+			}
+			live.add(next);
+			layer = next;
+			maxStates = Math.max(maxStates, layer.size());
+		}
+		/* keep only the states a solution can be reached from, last frontier first */
+		Iterator<State> it = live.get(numNodes).iterator();
+		while (it.hasNext()) {
+			if (!isAccepting(it.next())) {
+				it.remove();
+			}
+		}
+		for (int node = numNodes - 1; node >= 0; node--) {
+			it = live.get(node).iterator();
+			while (it.hasNext()) {
+				if (!hasLiveStep(it.next(), node, live.get(node + 1))) {
+					it.remove();
+				}
+			}
+		}
+		return new SolutionIterator(live);
+	}
+	
+	private boolean hasLiveStep(State state, int node, HashSet<State> next) {
+		for (int choice = 0; choice < 4; choice++) {
+			State target = step(state, node, choice);
+			if (target != null && next.contains(target)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * walks the live states depth first, every path to the last frontier is
+	 * a solution
+	 *
+	 * @author Kyler
+	 */
+	private class SolutionIterator implements Iterator<Board> {
+		private ArrayList<HashSet<State>> live;
+		/* state on each frontier of the current path and the next choice to try from it */
+		private State[] path;
+		private int[] choices;
+		private int depth;
+		private boolean ready;
+		
+		public SolutionIterator(ArrayList<HashSet<State>> live) {
+			this.live = live;
+			this.path = new State[live.size()];
+			this.choices = new int[live.size()];
+			if (!live.get(0).isEmpty()) {
+				path[0] = live.get(0).iterator().next();
+				depth = 0;
+			} else {
+				depth = -1;
+			}
+		}
+		
+		public boolean hasNext() {
+			if (!ready) {
+				ready = advance();
+			}
+			return ready;
+		}
+		
+		public Board next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ready = false;
+			Board solution = board.deepCopy();
+			for (int node = 0; node < choices.length - 1; node++) {
+				int i = node / (numCols + 1);
+				int j = node % (numCols + 1);
+				/* the choice taken from path[node] is one less than the next one to try */
+				int choice = choices[node] - 1;
+				if (j < numCols) {
+					solution.setEdgeValue(board.getEdgeId(i, j, Edge.HORIZONTAL), (choice & 1) != 0 ? Edge.POSITIVE : Edge.NEGATIVE);
+				}
+				if (i < numRows) {
+					solution.setEdgeValue(board.getEdgeId(i, j, Edge.VERTICAL), (choice & 2) != 0 ? Edge.POSITIVE : Edge.NEGATIVE);
+				}
+			}
+			return solution;
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		/* moves the path to the next solution, returns false if there is none */
+		private boolean advance() {
+			int last = path.length - 1;
+			if (depth == last) {
+				/* step back from the solution returned last */
+				depth--;
+			}
+			while (depth >= 0) {
+				if (choices[depth] == 4) {
+					choices[depth] = 0;
+					depth--;
+					continue;
+				}
+				State target = step(path[depth], depth, choices[depth]++);
+				if (target != null && live.get(depth + 1).contains(target)) {
+					path[++depth] = target;
+					if (depth == last) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************* FRONTIER ******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* no edge crosses the frontier and no cell is pending */
+	private State initialState() {
+		byte[] data = new byte[stateSize];
+		Arrays.fill(data, remStart, closedIndex, FREE);
+		return new State(data);
+	}
+	
+	/* return true if the state ends a sweep with a single closed loop */
+	private boolean isAccepting(State state) {
+		return state.data[closedIndex] != 0;
+	}
+	
+	/**
+	 * decides the right edge, bit 0 of choice, and the down edge, bit 1 of
+	 * choice, of the node
+	 *
+	 * @return the next state, or null if the choice breaks a constraint
+	 */
+	private State step(State state, int node, int choice) {
+		int i = node / (numCols + 1);
+		int j = node % (numCols + 1);
+		int r = choice & 1;
+		int d = (choice >> 1) & 1;
+		/* edges leaving the board, and edges already known */
+		if ((r == 1 && j == numCols) || (d == 1 && i == numRows)) {
+			return null;
+		}
+		if (j < numCols && !allows(board.getEdgeId(i, j, Edge.HORIZONTAL), r)) {
+			return null;
+		}
+		if (i < numRows && !allows(board.getEdgeId(i, j, Edge.VERTICAL), d)) {
+			return null;
+		}
+		byte[] s = state.data;
+		boolean closed = s[closedIndex] != 0;
+		if (closed && (r | d) != 0) {
+			return null;
+		}
+		int a = j > 0 ? s[right] : 0;
+		int b = s[j];
+		int degree = (a > 0 ? 1 : 0) + (b > 0 ? 1 : 0) + r + d;
+		if (degree != 0 && degree != 2) {
+			return null;
+		}
+		byte[] t = s.clone();
+		/* cell above the node gets its bottom edge */
+		if (i > 0 && t[remStart + j] != FREE && t[remStart + j] != r) {
+			return null;
+		}
+		/* cell left of the node gets its right edge */
+		if (j > 0 && i < numRows && t[remStart + j - 1] != FREE) {
+			int rem = t[remStart + j - 1] - d;
+			if (rem < 0 || rem > 1) {
+				return null;
+			}
+			t[remStart + j - 1] = (byte) rem;
+		}
+		/* cell below and right of the node gets its top and left edges */
+		t[remStart + j] = FREE;
+		if (i < numRows && j < numCols && board.getConstraint(i, j) != Board.NO_CONSTRAINT) {
+			int rem = board.getConstraint(i, j) - r - d;
+			if (rem < 0 || rem > 2) {
+				return null;
+			}
+			t[remStart + j] = (byte) rem;
+		}
+		/* paths */
+		t[j] = 0;
+		t[right] = 0;
+		if (a > 0 && b > 0) {
+			if (a == b) {
+				/* closes the loop, which must hold every path */
+				for (int k = 0; k <= numCols; k++) {
+					if (t[k] != 0) {
+						return null;
+					}
+				}
+				t[closedIndex] = 1;
+			} else {
+				/* joins two paths, the far end of b now pairs with the far end of a */
+				for (int k = 0; k <= numCols; k++) {
+					if (t[k] == b) {
+						t[k] = (byte) a;
+					}
+				}
+			}
+		} else if (a > 0 || b > 0) {
+			t[r == 1 ? right : j] = (byte) Math.max(a, b);
+		} else if (r == 1) {
+			/* starts a path, labels are canonicalized below */
+			t[right] = Byte.MAX_VALUE;
+			t[j] = Byte.MAX_VALUE;
+		}
+		if (j == numCols) {
+			/* next node starts a row, nothing enters it from the left */
+			t[right] = 0;
+		}
+		canonicalize(t);
+		return new State(t);
+	}
+	
+	/* return true if the edge may take the value, 1 for positive */
+	private boolean allows(int id, int value) {
+		return !board.isKnown(id) || board.isPositive(id) == (value == 1);
+	}
+	
+	/* relabels the paths 1, 2, ... in the order their first end appears */
+	private void canonicalize(byte[] t) {
+		byte[] map = new byte[Byte.MAX_VALUE + 1];
+		byte next = 1;
+		for (int k = 0; k <= right; k++) {
+			if (t[k] > 0) {
+				if (map[t[k]] == 0) {
+					map[t[k]] = next++;
+				}
+				t[k] = map[t[k]];
+			}
+		}
+	}
+}
@@ -0,0 +1,356 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * generates puzzles with a unique solution: grows a random region of
+ * cells whose boundary is a single loop, gives every cell the number of
+ * loop edges around it and then removes the clues in random order, each
+ * only if the puzzle stays solvable at the difficulty asked for. the
+ * uniqueness checks of a puzzle share one CDCLSolver with switchable
+ * clues and the known solution excluded, so what it learns about the
+ * region carries over from one removal to the next. each check has a
+ * budget of conflicts, a clue whose check runs out is kept
+ *
+ * @author Kyler
+ *
+ */
+public class Generator {
+	/* difficulties, the solver needed to solve the puzzle */
+	public static final int EASY = 0;
+	public static final int MEDIUM = 1;
+	public static final int HARD = 2;
+	public static final String[] DIFFICULTY_NAMES = { "easy", "medium", "hard" };
+	/* share of the cells the region grows to, a random value in this range */
+	private static final double MIN_FILL = 0.4;
+	private static final double MAX_FILL = 0.7;
+	/* conflicts a uniqueness check may take before the puzzle is taken as not unique */
+	private static final long UNIQUE_CONFLICTS = 20000;
+	/* regions tried for one puzzle before giving up */
+	private static final int MAX_ATTEMPTS = 100;
+	private int numRows;
+	private int numCols;
+	private int difficulty;
+	
+	public Generator(int numRows, int numCols, int difficulty) {
+		if (numRows < 2 || numCols < 2) {
+			throw new IllegalArgumentException("board " + numRows + "x" + numCols);
+		}
+		if (difficulty < EASY || difficulty > HARD) {
+			throw new IllegalArgumentException("difficulty " + difficulty);
+		}
+		this.numRows = numRows;
+		this.numCols = numCols;
+		this.difficulty = difficulty;
+	}
+	
+	/**
+	 * generates count puzzles on a pool of threads, puzzle k only depends
+	 * on seed and k
+	 *
+	 * @return the puzzles with their solution on the board, in order of k,
+	 * 		without those that could not be generated
+	 */
+	public List<Board> generate(int count, long seed, int numThreads) {
+		ArrayList<Callable<Board>> tasks = new ArrayList<Callable<Board>>();
+		ArrayList<Board> puzzles = new ArrayList<Board>();
+		for (int k = 0; k < count; k++) {
+			final Random random = new Random(seed + k * 0x9E3779B97F4A7C15L);
+			tasks.add(new Callable<Board>() {
+				public Board call() {
+					return generate(random);
+				}
+			});
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Board>> results = pool.invokeAll(tasks);
+			for (int k = 0; k < results.size(); k++) {
+				try {
+					Board puzzle = results.get(k).get();
+					if (puzzle != null) {
+						puzzles.add(puzzle);
+					}
+				} catch (ExecutionException e) {
+					/* only this puzzle is lost, it is dropped like one that could not be generated */
+					System.out.println(">> Generator: puzzle " + (k + 1) + " failed: " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdown();
+		}
+		return puzzles;
+	}
+	
+	/**
+	 * generates one puzzle
+	 *
+	 * @return the puzzle with its solution on the board, or null if none was
+	 * 		found in MAX_ATTEMPTS regions
+	 */
+	public Board generate(Random random) {
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+			boolean[] inside = growRegion(random);
+			byte[] clues = new byte[numRows * numCols];
+			for (int m = 0; m < numRows; m++) {
+				for (int n = 0; n < numCols; n++) {
+					clues[m * numCols + n] = (byte) countBoundary(inside, m, n);
+				}
+			}
+			Board solution = new Board(numRows, numCols, clues.clone());
+			for (int id = 0; id < solution.getNumEdges(); id++) {
+				boolean a = isInside(inside, solution.getEdgeCell(id, 0));
+				boolean b = isInside(inside, solution.getEdgeCell(id, 1));
+				solution.setEdgeValue(id, a != b ? Edge.POSITIVE : Edge.NEGATIVE);
+			}
+			CDCLSolver cdcl = new CDCLSolver(new Board(numRows, numCols, clues.clone()), true);
+			cdcl.excludeSolution(solution);
+			/* remove clues in random order while the puzzle stays solvable */
+			int[] order = new int[clues.length];
+			for (int c = 0; c < order.length; c++) {
+				int k = random.nextInt(c + 1);
+				order[c] = order[k];
+				order[k] = c;
+			}
+			for (int c : order) {
+				byte clue = clues[c];
+				clues[c] = Board.NO_CONSTRAINT;
+				cdcl.setClueEnabled(c, false);
+				if (!isSolvable(clues, solution, cdcl)) {
+					clues[c] = clue;
+					cdcl.setClueEnabled(c, true);
+				}
+			}
+			/* confirm the solution is unique before the puzzle is kept, the full set of clues was never checked */
+			Board puzzle = new Board(numRows, numCols, clues);
+			if (isUnique(cdcl)) {
+				for (int id = 0; id < puzzle.getNumEdges(); id++) {
+					puzzle.setEdgeValue(id, solution.getEdgeValue(id));
+				}
+				return puzzle;
+			}
+		}
+		return null;
+	}
+	
+	/* return true if the solver for the difficulty finds the solution from the clues, cdcl holds the same clues */
+	private boolean isSolvable(byte[] clues, Board solution, CDCLSolver cdcl) {
+		Board board = new Board(numRows, numCols, clues.clone());
+		Solver solver = new Solver(board);
+		solver.setVerbose(false);
+		if (solver.applyRules() && solver.checkIfSolved()) {
+			return matches(board, solution);
+		}
+		if (difficulty == EASY) {
+			return false;
+		}
+		if (difficulty == MEDIUM) {
+			solver.setCompletion(Solver.COMPLETE_NONE);
+			solver.SATsolve();
+			return solver.checkIfSolved() && matches(board, solution);
+		}
+		return isUnique(cdcl);
+	}
+	
+	/**
+	 * @return true if the clues enabled in cdcl have no solution but the one
+	 * 		excluded, false if there is another or the check ran out of
+	 * 		conflicts
+	 */
+	private static boolean isUnique(CDCLSolver cdcl) {
+		/* the budget is counted from the conflicts of earlier checks */
+		cdcl.setConflictLimit(cdcl.getConflicts() + UNIQUE_CONFLICTS);
+		return !cdcl.solve() && !cdcl.isExhausted();
+	}
+	
+	private static boolean matches(Board board, Board solution) {
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (board.isPositive(id) != solution.isPositive(id)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** REGION *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * grows a region of cells from a random cell, one neighbouring cell at a
+	 * time. a cell is only added if the region stays connected without
+	 * touching itself at a corner and without enclosing outside cells, so
+	 * its boundary stays a single loop
+	 */
+	private boolean[] growRegion(Random random) {
+		int numCells = numRows * numCols;
+		boolean[] inside = new boolean[numCells];
+		/* a region of one cell would need a clue of 4 */
+		int target = Math.max(2, (int) (numCells * (MIN_FILL + random.nextDouble() * (MAX_FILL - MIN_FILL))));
+		/* cells next to the region, a cell may be listed more than once */
+		int[] candidates = new int[4 * numCells + 1];
+		int numCandidates = 0;
+		int[] stack = new int[numCells];
+		boolean[] seen = new boolean[numCells];
+		int start = random.nextInt(numCells);
+		inside[start] = true;
+		int size = 1;
+		numCandidates = addNeighbours(inside, start, candidates, numCandidates);
+		while (size < target && numCandidates > 0) {
+			int k = random.nextInt(numCandidates);
+			int cell = candidates[k];
+			candidates[k] = candidates[--numCandidates];
+			if (inside[cell] || pinches(inside, cell)) {
+				continue;
+			}
+			inside[cell] = true;
+			if (!outsideConnected(inside, stack, seen)) {
+				inside[cell] = false;
+				continue;
+			}
+			size++;
+			numCandidates = addNeighbours(inside, cell, candidates, numCandidates);
+		}
+		return inside;
+	}
+	
+	private int addNeighbours(boolean[] inside, int cell, int[] candidates, int numCandidates) {
+		int m = cell / numCols;
+		int n = cell % numCols;
+		if (m > 0 && !inside[cell - numCols]) {
+			candidates[numCandidates++] = cell - numCols;
+		}
+		if (m < numRows - 1 && !inside[cell + numCols]) {
+			candidates[numCandidates++] = cell + numCols;
+		}
+		if (n > 0 && !inside[cell - 1]) {
+			candidates[numCandidates++] = cell - 1;
+		}
+		if (n < numCols - 1 && !inside[cell + 1]) {
+			candidates[numCandidates++] = cell + 1;
+		}
+		return numCandidates;
+	}
+	
+	/* return true if the cell would touch the region only at a corner of one of its 2x2 blocks */
+	private boolean pinches(boolean[] inside, int cell) {
+		int m = cell / numCols;
+		int n = cell % numCols;
+		for (int dm = -1; dm <= 1; dm += 2) {
+			for (int dn = -1; dn <= 1; dn += 2) {
+				if (isInside(inside, m + dm, n + dn) && !isInside(inside, m + dm, n) && !isInside(inside, m, n + dn)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/* return true if every outside cell is connected to the border of the board through outside cells */
+	private boolean outsideConnected(boolean[] inside, int[] stack, boolean[] seen) {
+		int numCells = numRows * numCols;
+		int numOutside = 0;
+		int numSeen = 0;
+		int stackSize = 0;
+		for (int cell = 0; cell < numCells; cell++) {
+			seen[cell] = false;
+			if (!inside[cell]) {
+				numOutside++;
+			}
+		}
+		for (int cell = 0; cell < numCells; cell++) {
+			int m = cell / numCols;
+			int n = cell % numCols;
+			if (!inside[cell] && (m == 0 || n == 0 || m == numRows - 1 || n == numCols - 1)) {
+				seen[cell] = true;
+				stack[stackSize++] = cell;
+			}
+		}
+		while (stackSize > 0) {
+			int cell = stack[--stackSize];
+			numSeen++;
+			int m = cell / numCols;
+			int n = cell % numCols;
+			stackSize = visit(inside, seen, stack, stackSize, m - 1, n);
+			stackSize = visit(inside, seen, stack, stackSize, m + 1, n);
+			stackSize = visit(inside, seen, stack, stackSize, m, n - 1);
+			stackSize = visit(inside, seen, stack, stackSize, m, n + 1);
+		}
+		return numSeen == numOutside;
+	}
+	
+	private int visit(boolean[] inside, boolean[] seen, int[] stack, int stackSize, int m, int n) {
+		if (m >= 0 && n >= 0 && m < numRows && n < numCols) {
+			int cell = m * numCols + n;
+			if (!inside[cell] && !seen[cell]) {
+				seen[cell] = true;
+				stack[stackSize++] = cell;
+			}
+		}
+		return stackSize;
+	}
+	
+	private boolean isInside(boolean[] inside, int m, int n) {
+		return m >= 0 && n >= 0 && m < numRows && n < numCols && inside[m * numCols + n];
+	}
+	
+	/* cell -1 is outside the board */
+	private static boolean isInside(boolean[] inside, int cell) {
+		return cell >= 0 && inside[cell];
+	}
+	
+	/* return number of sides of the cell between the region and the outside */
+	private int countBoundary(boolean[] inside, int m, int n) {
+		boolean in = isInside(inside, m, n);
+		int count = 0;
+		count += isInside(inside, m - 1, n) != in ? 1 : 0;
+		count += isInside(inside, m + 1, n) != in ? 1 : 0;
+		count += isInside(inside, m, n - 1) != in ? 1 : 0;
+		count += isInside(inside, m, n + 1) != in ? 1 : 0;
+		return count;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** OUTPUT *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * writes the puzzles to a corpus with their solutions if the filename
+	 * ends in Corpus.EXTENSION, else as text separated by empty lines
+	 */
+	public static void write(List<Board> puzzles, String filename) throws IOException {
+		if (filename.endsWith(Corpus.EXTENSION)) {
+			Corpus.Builder builder = new Corpus.Builder(filename);
+			try {
+				for (Board puzzle : puzzles) {
+					builder.add(puzzle, true);
+				}
+			} finally {
+				builder.close();
+			}
+		} else {
+			Writer writer = new BufferedWriter(new FileWriter(filename));
+			try {
+				for (int k = 0; k < puzzles.size(); k++) {
+					if (k > 0) {
+						writer.write('\n');
+					}
+					Corpus.writeClues(puzzles.get(k), writer);
+				}
+			} finally {
+				writer.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,433 @@
+import java.util.Arrays;
+
+/**
+ * implications between edge literals learned by probing a board. a probe
+ * that sets literal a and propagates without contradiction shows that
+ * every literal on its trail follows from a, so a implies each of them
+ * and the negation of each implies the negation of a. the implications
+ * hold for as long as no known edge is unset, so a graph is kept for one
+ * round of probing and dropped after it.
+ *
+ * the graph saves probes three ways. analyze sets the literals reached
+ * from the known edges and the negation of every literal that reaches its
+ * own negation, and finds the strongly connected components, whose
+ * literals are equivalent so only one edge of each is probed. and a probe
+ * only reads the board near the edges on its trail, so it is repeated only
+ * once an edge near them is set or a path of positive edges ending near
+ * them changes its other end, which could close a loop. reachability is
+ * read off the discovery and finish times of a depth first search, which
+ * shows most but not every path
+ *
+ * @author Kyler
+ *
+ */
+public class ImplicationGraph {
+	private Board board;
+	private int numEdges;
+	/* literals on the trail of the last probe of each literal, null if it was not probed or failed */
+	private int[][] implied;
+	private int numImplications;
+	/* the graph as adjacency arrays, rebuilt by analyze: successors of lit are arcs[first[lit]] to arcs[first[lit+1]-1] */
+	private int[] first;
+	private int[] arcs;
+	/* literals analyze found to hold */
+	private int[] forced;
+	private int numForced;
+	/* value of each literal after analyze: 1 true, -1 false, 0 unknown */
+	private byte[] value;
+	/* depth first search: discovery and finish times, lowlink and component representative of each literal */
+	private int[] dsc;
+	private int[] fin;
+	private int[] low;
+	private int[] rep;
+	private int[] path;
+	private int[] next;
+	private int[] component;
+	private boolean[] onComponent;
+	/* true if analyze found a literal equivalent to its negation, the board has no solution */
+	private boolean inconsistent;
+	/* number of updates, the update each node last changed in and the update of the last probe of each edge */
+	private int clock;
+	private int[] changedAt;
+	private int[] probedAt;
+	/* edges whose last probe closed a loop, which depends on every positive edge */
+	private boolean[] closesLoop;
+	/* update in which the positive edges of the board last closed a loop */
+	private int loopClosedAt = -1;
+	/* board trail up to which update has seen the edges set */
+	private int trailMark;
+	
+	/**
+	 * starts an empty graph for the board, which should be at a fixpoint of
+	 * the rules
+	 */
+	public ImplicationGraph(Board board) {
+		this.board = board;
+		this.numEdges = board.getNumEdges();
+		this.implied = new int[2 * numEdges][];
+		this.value = new byte[2 * numEdges];
+		this.forced = new int[2 * numEdges];
+		this.first = new int[2 * numEdges + 1];
+		this.arcs = new int[0];
+		this.dsc = new int[2 * numEdges];
+		this.fin = new int[2 * numEdges];
+		this.low = new int[2 * numEdges];
+		this.rep = new int[2 * numEdges];
+		this.path = new int[2 * numEdges];
+		this.next = new int[2 * numEdges];
+		this.component = new int[2 * numEdges];
+		this.onComponent = new boolean[2 * numEdges];
+		this.changedAt = new int[board.getNumNodes()];
+		this.probedAt = new int[numEdges];
+		this.closesLoop = new boolean[numEdges];
+		this.trailMark = board.getTrailSize();
+		for (int lit = 0; lit < rep.length; lit++) {
+			rep[lit] = lit;
+		}
+		Arrays.fill(probedAt, -1);
+	}
+	
+	/* return literal of the edge taking the value, 2*id if it is positive and 2*id+1 if negative as CDCLSolver */
+	public static int literal(int id, int value) {
+		return value == Edge.POSITIVE ? 2 * id : 2 * id + 1;
+	}
+	
+	public static int getEdge(int lit) {
+		return lit >>> 1;
+	}
+	
+	public static int getValue(int lit) {
+		return (lit & 1) == 0 ? Edge.POSITIVE : Edge.NEGATIVE;
+	}
+	
+	public static int negate(int lit) {
+		return lit ^ 1;
+	}
+	
+	/* return number of implications recorded, without their contrapositives */
+	public int getNumImplications() {
+		return numImplications;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** PROBES *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * records the literals set on the board's trail from mark, after the
+	 * probed literal itself, as implied by lit. they replace those of an
+	 * earlier probe of lit, which are a subset of them
+	 * 
+	 * @param closesLoop
+	 * 		true if the positive edges formed a loop after the probe
+	 */
+	public void record(int lit, int mark, boolean closesLoop) {
+		int[] lits = new int[board.getTrailSize() - mark];
+		int size = 0;
+		for (int k = mark; k < board.getTrailSize(); k++) {
+			int id = board.getTrailEdge(k);
+			if (id != getEdge(lit)) {
+				lits[size++] = literal(id, board.getEdgeValue(id));
+			}
+		}
+		if (implied[lit] != null) {
+			numImplications -= implied[lit].length;
+		}
+		implied[lit] = size == lits.length ? lits : Arrays.copyOf(lits, size);
+		numImplications += size;
+		if (closesLoop) {
+			this.closesLoop[getEdge(lit)] = true;
+		}
+	}
+	
+	/**
+	 * records that lit and other are equivalent, found by a probe of both
+	 * values of the edge of lit without contradiction that set the edge of
+	 * other to a different value in each
+	 */
+	public void setEquivalent(int lit, int other) {
+		rep[other] = rep[lit];
+		rep[negate(other)] = rep[negate(lit)];
+	}
+	
+	/* records that the edge is about to be probed */
+	public void setProbed(int id) {
+		probedAt[id] = clock;
+		closesLoop[id] = false;
+	}
+	
+	/**
+	 * takes note of the edges set on the board since the last update. each
+	 * changes the nodes around its ends, whose cells read it, and a positive
+	 * edge also the far ends of the path it is on
+	 */
+	public void update() {
+		clock++;
+		for (int k = trailMark; k < board.getTrailSize(); k++) {
+			int id = board.getTrailEdge(k);
+			for (int end = 0; end < 2; end++) {
+				int node = board.getEdgeNode(id, end);
+				touch(node);
+				if (board.isPositive(id)) {
+					int far = walk(node, id);
+					if (far < 0) {
+						/* a loop closed, every probe setting a positive edge now fails */
+						loopClosedAt = clock;
+					} else {
+						touch(far);
+					}
+				}
+			}
+		}
+		trailMark = board.getTrailSize();
+	}
+	
+	/**
+	 * @return false if probing the edge would repeat a probe: it was probed
+	 * 		and nothing near its trails changed since, or it is equivalent, or
+	 * 		opposite, to an edge probed since the last update
+	 */
+	public boolean needsProbe(int id) {
+		int other = getEdge(rep[2 * id]);
+		if (other != id && probedAt[other] == clock) {
+			return false;
+		}
+		if (probedAt[id] < 0 || closesLoop[id] || implied[2 * id] == null || implied[2 * id + 1] == null) {
+			return true;
+		}
+		int since = probedAt[id];
+		if (loopClosedAt > since || isChanged(id, since)) {
+			return true;
+		}
+		for (int lit = 2 * id; lit <= 2 * id + 1; lit++) {
+			for (int b : implied[lit]) {
+				if (isChanged(getEdge(b), since)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/* return true if a node at either end of the edge changed after the passed update */
+	private boolean isChanged(int id, int since) {
+		return changedAt[board.getEdgeNode(id, 0)] > since || changedAt[board.getEdgeNode(id, 1)] > since;
+	}
+	
+	/* marks the node and every node sharing a cell with it as changed, their edges are read by the cells at the node */
+	private void touch(int node) {
+		int numCols = board.getNumCols();
+		int i = node / (numCols + 1);
+		int j = node % (numCols + 1);
+		for (int di = -1; di <= 1; di++) {
+			for (int dj = -1; dj <= 1; dj++) {
+				int ni = i + di;
+				int nj = j + dj;
+				if (ni >= 0 && ni <= board.getNumRows() && nj >= 0 && nj <= numCols) {
+					changedAt[ni * (numCols + 1) + nj] = clock;
+				}
+			}
+		}
+	}
+	
+	/* return node reached by following positive edges from the node away from the edge, -1 if they lead back to it */
+	private int walk(int node, int from) {
+		int prev = from;
+		int at = node;
+		for (int steps = 0; steps < numEdges; steps++) {
+			int next = -1;
+			for (int k = 0; k < 4; k++) {
+				int id = board.getNodeEdge(at, k);
+				if (id >= 0 && id != prev && board.isPositive(id)) {
+					next = id;
+					break;
+				}
+			}
+			if (next < 0) {
+				return at;
+			}
+			if (next == from) {
+				return -1;
+			}
+			prev = next;
+			at = board.getEdgeNode(next, 0) == at ? board.getEdgeNode(next, 1) : board.getEdgeNode(next, 0);
+		}
+		return at;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************* ANALYSIS ******************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * finds the literals that hold on the board by the implications, and
+	 * the components of equivalent literals among the rest. the board is
+	 * not changed, the literals found are read with getNumForced and
+	 * getForced and the components with needsProbe
+	 */
+	public void analyze() {
+		numForced = 0;
+		inconsistent = false;
+		for (int lit = 0; lit < 2 * numEdges; lit++) {
+			int id = getEdge(lit);
+			value[lit] = (byte) (!board.isKnown(id) ? 0 : board.getEdgeValue(id) == getValue(lit) ? 1 : -1);
+			rep[lit] = lit;
+		}
+		build();
+		propagate();
+		if (!inconsistent) {
+			components();
+		}
+	}
+	
+	/* return true if the last analyze found the implications contradict each other */
+	public boolean isInconsistent() {
+		return inconsistent;
+	}
+	
+	public int getNumForced() {
+		return numForced;
+	}
+	
+	/* return k-th literal found to hold by the last analyze */
+	public int getForced(int k) {
+		return forced[k];
+	}
+	
+	/* fills first and arcs with every implication and its contrapositive */
+	private void build() {
+		int numLits = 2 * numEdges;
+		Arrays.fill(first, 0);
+		for (int a = 0; a < numLits; a++) {
+			if (implied[a] != null) {
+				first[a + 1] += implied[a].length;
+				for (int b : implied[a]) {
+					first[negate(b) + 1]++;
+				}
+			}
+		}
+		for (int lit = 0; lit < numLits; lit++) {
+			first[lit + 1] += first[lit];
+		}
+		if (arcs.length < first[numLits]) {
+			arcs = new int[first[numLits]];
+		}
+		/* next holds the free slot of each literal while filling */
+		System.arraycopy(first, 0, next, 0, numLits);
+		for (int a = 0; a < numLits; a++) {
+			if (implied[a] != null) {
+				for (int b : implied[a]) {
+					arcs[next[a]++] = b;
+					arcs[next[negate(b)]++] = negate(a);
+				}
+			}
+		}
+	}
+	
+	/* sets every literal reachable from a true literal, they are added to forced if their edge is unknown */
+	private void propagate() {
+		int numLits = 2 * numEdges;
+		int[] queue = path;
+		int head = 0;
+		int tail = 0;
+		for (int lit = 0; lit < numLits; lit++) {
+			if (value[lit] > 0 && first[lit + 1] > first[lit]) {
+				queue[tail++] = lit;
+			}
+		}
+		while (head < tail) {
+			int a = queue[head++];
+			for (int k = first[a]; k < first[a + 1]; k++) {
+				int b = arcs[k];
+				if (value[b] < 0) {
+					inconsistent = true;
+					return;
+				}
+				if (value[b] == 0) {
+					set(b);
+					queue[tail++] = b;
+				}
+			}
+		}
+	}
+	
+	private void set(int lit) {
+		value[lit] = 1;
+		value[negate(lit)] = -1;
+		forced[numForced++] = lit;
+	}
+	
+	/**
+	 * tarjan's algorithm over the unknown literals, without recursion. path
+	 * holds the literals of the search from its root, next the arc each of
+	 * them continues from, and component the literals whose component is
+	 * not closed yet
+	 */
+	private void components() {
+		int numLits = 2 * numEdges;
+		Arrays.fill(dsc, 0);
+		int time = 0;
+		int numComponent = 0;
+		for (int root = 0; root < numLits; root++) {
+			if (value[root] != 0 || dsc[root] != 0) {
+				continue;
+			}
+			int depth = 0;
+			path[depth++] = root;
+			dsc[root] = low[root] = ++time;
+			next[root] = first[root];
+			component[numComponent++] = root;
+			onComponent[root] = true;
+			while (depth > 0) {
+				int a = path[depth - 1];
+				if (next[a] < first[a + 1]) {
+					int b = arcs[next[a]++];
+					if (value[b] != 0) {
+						continue;
+					}
+					if (dsc[b] == 0) {
+						path[depth++] = b;
+						dsc[b] = low[b] = ++time;
+						next[b] = first[b];
+						component[numComponent++] = b;
+						onComponent[b] = true;
+					} else if (onComponent[b]) {
+						low[a] = Math.min(low[a], dsc[b]);
+					}
+					continue;
+				}
+				fin[a] = ++time;
+				depth--;
+				if (depth > 0) {
+					int parent = path[depth - 1];
+					low[parent] = Math.min(low[parent], low[a]);
+				}
+				if (low[a] == dsc[a]) {
+					/* a is the root of a component, which is every literal above it */
+					int from = numComponent;
+					int least = a;
+					do {
+						from--;
+						least = Math.min(least, component[from]);
+					} while (component[from] != a);
+					for (int k = from; k < numComponent; k++) {
+						int lit = component[k];
+						onComponent[lit] = false;
+						rep[lit] = least;
+						if (rep[negate(lit)] == least) {
+							inconsistent = true;
+						}
+					}
+					numComponent = from;
+				}
+			}
+		}
+		/* a literal whose negation was found below it in the search reaches it, so it fails */
+		for (int lit = 0; lit < numLits; lit++) {
+			int neg = negate(lit);
+			if (value[lit] == 0 && dsc[lit] < dsc[neg] && fin[neg] < fin[lit]) {
+				set(neg);
+			}
+		}
+	}
+}
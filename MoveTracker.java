@@ -0,0 +1,282 @@
+/**
+ * keeps the state of a board being played up to date move by move, so
+ * that whether it is solved and how many conflicts it holds are known
+ * without rescanning the board. each move updates the positive edge
+ * counts of two cells and two nodes, and the paths of positive edges
+ * ("segments") are tracked by their ends: every end node knows the node
+ * at the other end and the length of the path. adding an edge joins or
+ * closes segments in constant time, removing one walks the segments it
+ * splits. while a node has more than two positive edges the segments are
+ * not defined, they are rebuilt once no node does
+ *
+ * @author Kyler
+ *
+ */
+public class MoveTracker {
+	private Board board;
+	/* positive edges around each cell and at each node */
+	private byte[] cellCount;
+	private byte[] nodeDegree;
+	/* for a node ending a segment, the node at the other end and the number of edges between them */
+	private int[] partner;
+	private int[] segLength;
+	private int numPositive;
+	/* cells whose count differs from their constraint, and exceeds it */
+	private int numBadCells;
+	private int numOverCells;
+	/* nodes with one, and with more than two, positive edges */
+	private int numDangling;
+	private int numOverfull;
+	/* closed loops and the edges on them */
+	private int numLoops;
+	private int loopEdges;
+	/* true while segments are not tracked, a node has more than two positive edges */
+	private boolean dirty;
+	/* number of edges crossed by the last walk */
+	private int walkLength;
+	
+	public MoveTracker(Board board) {
+		this.board = board;
+		cellCount = new byte[board.getNumCells()];
+		nodeDegree = new byte[board.getNumNodes()];
+		partner = new int[board.getNumNodes()];
+		segLength = new int[board.getNumNodes()];
+		for (int cell = 0; cell < board.getNumCells(); cell++) {
+			if (isBad(cell)) {
+				numBadCells++;
+			}
+		}
+		/* edges already positive are added without segments, which are built once at the end */
+		dirty = true;
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (board.isPositive(id)) {
+				count(id, 1);
+			}
+		}
+		if (numOverfull == 0) {
+			rebuild();
+		}
+	}
+	
+	public Board getBoard() {
+		return board;
+	}
+	
+	/**
+	 * flips the edge between positive and negative, as Edge.toggleValue
+	 */
+	public void toggle(int id) {
+		setPositive(id, !board.isPositive(id));
+	}
+	
+	/**
+	 * sets the edge positive or negative and updates the counts and segments
+	 */
+	public void setPositive(int id, boolean positive) {
+		boolean was = board.isPositive(id);
+		board.setEdgeValue(id, positive ? Edge.POSITIVE : Edge.NEGATIVE);
+		if (was == positive) {
+			return;
+		}
+		int a = board.getEdgeNode(id, 0);
+		int b = board.getEdgeNode(id, 1);
+		if (positive) {
+			if (nodeDegree[a] >= 2 || nodeDegree[b] >= 2) {
+				dirty = true;
+			}
+			if (!dirty) {
+				join(a, b);
+			}
+			count(id, 1);
+		} else {
+			count(id, -1);
+			if (!dirty) {
+				split(a, b);
+			}
+		}
+		if (dirty && numOverfull == 0) {
+			rebuild();
+		}
+	}
+	
+	/**
+	 * @return true if every constraint is met and the positive edges form a
+	 * 		single loop, as Solver.checkIfSolved
+	 */
+	public boolean isSolved() {
+		return !dirty && numPositive > 0 && numBadCells == 0 && numDangling == 0 && numLoops == 1
+				&& loopEdges == numPositive;
+	}
+	
+	/**
+	 * @return number of conflicts no later move can fix without removing an
+	 * 		edge: cells with too many positive edges, nodes with more than two,
+	 * 		and a closed loop while other positive edges remain
+	 */
+	public int getNumConflicts() {
+		int conflicts = numOverCells + numOverfull;
+		if (!dirty && numLoops > 0 && (numLoops > 1 || loopEdges < numPositive)) {
+			conflicts++;
+		}
+		return conflicts;
+	}
+	
+	/* return number of constrained cells whose count differs from their constraint */
+	public int getNumUnsatisfied() {
+		return numBadCells;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** COUNTS *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* adds delta to the counts of the cells beside and the nodes at the ends of the edge */
+	private void count(int id, int delta) {
+		numPositive += delta;
+		for (int side = 0; side < 2; side++) {
+			int cell = board.getEdgeCell(id, side);
+			if (cell >= 0) {
+				countCell(cell, delta);
+			}
+			countNode(board.getEdgeNode(id, side), delta);
+		}
+	}
+	
+	private void countCell(int cell, int delta) {
+		int c = board.getConstraint(cell);
+		if (isBad(cell)) {
+			numBadCells--;
+		}
+		if (c != Board.NO_CONSTRAINT && cellCount[cell] > c) {
+			numOverCells--;
+		}
+		cellCount[cell] += delta;
+		if (isBad(cell)) {
+			numBadCells++;
+		}
+		if (c != Board.NO_CONSTRAINT && cellCount[cell] > c) {
+			numOverCells++;
+		}
+	}
+	
+	private boolean isBad(int cell) {
+		return board.getConstraint(cell) != Board.NO_CONSTRAINT && cellCount[cell] != board.getConstraint(cell);
+	}
+	
+	private void countNode(int node, int delta) {
+		numDangling -= nodeDegree[node] == 1 ? 1 : 0;
+		numOverfull -= nodeDegree[node] > 2 ? 1 : 0;
+		nodeDegree[node] += delta;
+		numDangling += nodeDegree[node] == 1 ? 1 : 0;
+		numOverfull += nodeDegree[node] > 2 ? 1 : 0;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************* SEGMENTS ******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* links the segments ending at a and b through the new edge a-b, degrees are those before the edge */
+	private void join(int a, int b) {
+		if (nodeDegree[a] == 0 && nodeDegree[b] == 0) {
+			link(a, b, 1);
+		} else if (nodeDegree[b] == 0) {
+			link(partner[a], b, segLength[a] + 1);
+		} else if (nodeDegree[a] == 0) {
+			link(partner[b], a, segLength[b] + 1);
+		} else if (partner[a] == b) {
+			/* both ends of one segment, it closes */
+			numLoops++;
+			loopEdges += segLength[a] + 1;
+		} else {
+			link(partner[a], partner[b], segLength[a] + segLength[b] + 1);
+		}
+	}
+	
+	/* splits the segment or loop that held the removed edge a-b, degrees are those after the edge */
+	private void split(int a, int b) {
+		int endA = a;
+		int lenA = 0;
+		if (nodeDegree[a] == 1) {
+			endA = walk(a, null);
+			lenA = walkLength;
+		}
+		if (endA == b) {
+			/* the edge was on a loop, which opens into a segment from a to b */
+			numLoops--;
+			loopEdges -= lenA + 1;
+			link(a, b, lenA);
+			return;
+		}
+		if (nodeDegree[a] == 1) {
+			link(a, endA, lenA);
+		}
+		if (nodeDegree[b] == 1) {
+			int endB = walk(b, null);
+			link(b, endB, walkLength);
+		}
+	}
+	
+	private void link(int a, int b, int length) {
+		partner[a] = b;
+		partner[b] = a;
+		segLength[a] = length;
+		segLength[b] = length;
+	}
+	
+	/**
+	 * follows positive edges from the node until a node with one positive
+	 * edge or the node itself is reached, marking the nodes passed in seen
+	 * unless it is null. every node on the way has at most two positive
+	 * edges
+	 *
+	 * @return the node reached, walkLength is set to the edges crossed
+	 */
+	private int walk(int node, boolean[] seen) {
+		int prev = -1;
+		int at = node;
+		walkLength = 0;
+		while (true) {
+			if (seen != null) {
+				seen[at] = true;
+			}
+			int next = -1;
+			for (int k = 0; k < 4; k++) {
+				int id = board.getNodeEdge(at, k);
+				if (id >= 0 && id != prev && board.isPositive(id)) {
+					next = id;
+					break;
+				}
+			}
+			if (next < 0) {
+				return at;
+			}
+			walkLength++;
+			prev = next;
+			at = board.getEdgeNode(next, 0) == at ? board.getEdgeNode(next, 1) : board.getEdgeNode(next, 0);
+			if (at == node) {
+				return at;
+			}
+		}
+	}
+	
+	/* finds every segment and loop again, every node has at most two positive edges */
+	private void rebuild() {
+		boolean[] seen = new boolean[nodeDegree.length];
+		numLoops = 0;
+		loopEdges = 0;
+		for (int node = 0; node < nodeDegree.length; node++) {
+			if (nodeDegree[node] == 1 && !seen[node]) {
+				link(node, walk(node, seen), walkLength);
+			}
+		}
+		for (int node = 0; node < nodeDegree.length; node++) {
+			if (nodeDegree[node] == 2 && !seen[node]) {
+				/* segments are all marked, so the node is on a loop */
+				walk(node, seen);
+				numLoops++;
+				loopEdges += walkLength;
+			}
+		}
+		dirty = false;
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * deductions of the neighbourhood of a cell with a constraint, looked up
+ * in precomputed tables instead of matched rule by rule. the neighbourhood
+ * is the 4 edges of the cell and the 8 edges leaving its corners, so every
+ * edge at each of the 4 corner nodes. its state is packed into a key, one
+ * base 3 digit per edge, and the table of the constraint holds for every
+ * key the unknown edges taking the same value in each assignment that
+ * gives the cell its constraint and each corner node 0 or 2 positive
+ * edges, or that there is no such assignment.
+ *
+ * the tables are built once by checking every assignment, so they hold
+ * every deduction of the neighbourhood in all 8 orientations and none
+ * that depends on the rest of the board, like the size of the loop
+ *
+ * @author Kyler
+ *
+ */
+public class PatternTable {
+	/* edges of the neighbourhood, see window */
+	public static final int NUM_EDGES = 12;
+	public static final int NUM_KEYS = 531441;	// 3^NUM_EDGES
+	/* key digits */
+	private static final int UNKNOWN = 0;
+	private static final int NEGATIVE = 1;
+	private static final int POSITIVE = 2;
+	/* entry layout: edges forced positive, edges forced negative, contradiction flag */
+	private static final int NEGATIVE_SHIFT = NUM_EDGES;
+	private static final int EDGE_MASK = (1 << NUM_EDGES) - 1;
+	private static final int CONTRADICTION = 1 << (2 * NUM_EDGES);
+	/* window positions of the edges at each corner node: top-left, top-right, bottom-left, bottom-right */
+	private static final int[][] NODE_EDGES = { { 0, 1, 4, 5 }, { 0, 3, 6, 7 }, { 1, 2, 8, 9 }, { 2, 3, 10, 11 } };
+	private static final int[] POW3 = new int[NUM_EDGES];
+	/* one table per constraint 1 to 3, built on first use */
+	private static volatile int[][] tables;
+	
+	static {
+		POW3[0] = 1;
+		for (int k = 1; k < NUM_EDGES; k++) {
+			POW3[k] = 3 * POW3[k - 1];
+		}
+	}
+	
+	/**
+	 * fills ids with the edges of the neighbourhood of the cell, -1 for
+	 * edges outside the board: the top, left, bottom and right edges of the
+	 * cell, then the left and up edges of its top-left corner, the right
+	 * and up edges of the top-right corner, the left and down edges of the
+	 * bottom-left corner and the right and down edges of the bottom-right
+	 * corner
+	 */
+	public static void window(Board board, int cell, int[] ids) {
+		for (int k = 0; k < 4; k++) {
+			ids[k] = board.getCellEdge(cell, k);
+		}
+		int topLeft = board.getEdgeNode(ids[0], 0);
+		int topRight = board.getEdgeNode(ids[0], 1);
+		int bottomLeft = board.getEdgeNode(ids[2], 0);
+		int bottomRight = board.getEdgeNode(ids[2], 1);
+		ids[4] = board.getNodeEdge(topLeft, 0);
+		ids[5] = board.getNodeEdge(topLeft, 2);
+		ids[6] = board.getNodeEdge(topRight, 1);
+		ids[7] = board.getNodeEdge(topRight, 2);
+		ids[8] = board.getNodeEdge(bottomLeft, 0);
+		ids[9] = board.getNodeEdge(bottomLeft, 3);
+		ids[10] = board.getNodeEdge(bottomRight, 1);
+		ids[11] = board.getNodeEdge(bottomRight, 3);
+	}
+	
+	/* return key of the state of the window edges, edges outside the board are negative */
+	public static int key(Board board, int[] ids) {
+		int key = 0;
+		for (int k = 0; k < NUM_EDGES; k++) {
+			int id = ids[k];
+			if (id < 0 || board.isNegative(id)) {
+				key += NEGATIVE * POW3[k];
+			} else if (board.isPositive(id)) {
+				key += POSITIVE * POW3[k];
+			}
+		}
+		return key;
+	}
+	
+	/**
+	 * @return table entry of the key for a cell with constraint c, 1 to 3
+	 */
+	public static int lookup(int c, int key) {
+		int[][] t = tables;
+		if (t == null) {
+			t = build();
+		}
+		return t[c - 1][key];
+	}
+	
+	public static boolean isContradiction(int entry) {
+		return (entry & CONTRADICTION) != 0;
+	}
+	
+	/* return window positions of the unknown edges forced positive */
+	public static int getPositive(int entry) {
+		return entry & EDGE_MASK;
+	}
+	
+	/* return window positions of the unknown edges forced negative */
+	public static int getNegative(int entry) {
+		return (entry >>> NEGATIVE_SHIFT) & EDGE_MASK;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** TABLES *******************************************************
+	 ***********************************************************************************************************************/
+	
+	private static synchronized int[][] build() {
+		if (tables == null) {
+			tables = build(3);
+		}
+		return tables;
+	}
+	
+	/**
+	 * fills the tables of constraints 1 to maxClue. canPos and canNeg hold,
+	 * for every key, the edges positive and negative in some consistent
+	 * assignment matching it. a key with an unknown digit matches the
+	 * assignments of the two keys with that digit known, which are larger,
+	 * so keys are visited from the largest down
+	 */
+	private static int[][] build(int maxClue) {
+		short[][] canPos = new short[maxClue][NUM_KEYS];
+		short[][] canNeg = new short[maxClue][NUM_KEYS];
+		int[][] t = new int[maxClue][NUM_KEYS];
+		for (int key = NUM_KEYS - 1; key >= 0; key--) {
+			int positive = 0;
+			int unknowns = 0;
+			int unknown = -1;
+			for (int k = 0, rest = key; k < NUM_EDGES; k++, rest /= 3) {
+				int digit = rest % 3;
+				if (digit == POSITIVE) {
+					positive |= 1 << k;
+				} else if (digit == UNKNOWN) {
+					unknowns |= 1 << k;
+					unknown = k;
+				}
+			}
+			for (int c = 0; c < maxClue; c++) {
+				short[] pos = canPos[c];
+				short[] neg = canNeg[c];
+				if (unknown < 0) {
+					if (isConsistent(c + 1, positive)) {
+						pos[key] = (short) positive;
+						neg[key] = (short) (~positive & EDGE_MASK);
+					}
+				} else {
+					pos[key] = (short) (pos[key + NEGATIVE * POW3[unknown]] | pos[key + POSITIVE * POW3[unknown]]);
+					neg[key] = (short) (neg[key + NEGATIVE * POW3[unknown]] | neg[key + POSITIVE * POW3[unknown]]);
+				}
+				if ((pos[key] | neg[key]) == 0) {
+					t[c][key] = CONTRADICTION;
+				} else {
+					/* forced edges of a known digit are left out, they need no deduction */
+					t[c][key] = (pos[key] & ~neg[key] & unknowns) | ((neg[key] & ~pos[key] & unknowns) << NEGATIVE_SHIFT);
+				}
+			}
+		}
+		return t;
+	}
+	
+	/* return true if the assignment gives the cell c positive edges and each corner node 0 or 2 */
+	private static boolean isConsistent(int c, int positive) {
+		if (Integer.bitCount(positive & 0xF) != c) {
+			return false;
+		}
+		for (int[] node : NODE_EDGES) {
+			int degree = 0;
+			for (int k : node) {
+				degree += (positive >>> k) & 1;
+			}
+			if (degree != 0 && degree != 2) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
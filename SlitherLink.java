@@ -1,5 +1,10 @@
 
 import java.io.*;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -8,14 +13,38 @@ import java.util.Scanner;
  *
  */
 public class SlitherLink {
+	/* solutions held in memory by the cache of -batch */
+	private static final int CACHE_CAPACITY = 4096;
+	/* board as loaded, every reset starts from a copy of it */
+	private static Board original;
 	private static Board board;
 	private static Solver solver;
+	/* counts and segments of the board as the player moves */
+	private static MoveTracker tracker;
+	/* output of printBoard */
+	private static StringBuilder printBuffer;
 	private static String filename;
 	
 	public static void main(String[] args) {
-		if (args.length > 0) {
+		if (args.length > 0 && args[0].equals("-batch")) {
+			batch(args);
+		} else if (args.length > 0 && (args[0].equals("-pack") || args[0].equals("-unpack"))) {
+			convert(args);
+		} else if (args.length > 0 && args[0].equals("-frontier")) {
+			frontier(args);
+		} else if (args.length > 0 && args[0].equals("-generate")) {
+			generate(args);
+		} else if (args.length > 0 && args[0].equals("-serve")) {
+			serve(args);
+		} else if (args.length > 0) {
 			/* filename */
 			filename = args[0];
+			try {
+				original = new Board(filename);
+			} catch (IOException e) {
+				System.out.println(">> SlitherLink: " + e.getMessage());
+				return;
+			}
 			/* init board and solver */
 			reset();
 			/* main loop */
@@ -51,12 +80,245 @@ public class SlitherLink {
 			scanner.close();
 		} else {
 			System.out.println("arg[0].length == 0");
+			printUsage();
+		}
+	}
+	
+	private static void printUsage() {
+		System.out.println("usage: SlitherLink <board file>" + "\n" +
+							"       SlitherLink -batch [-threads n] [-out dir] [-count limit] [-cache dir] <board file, corpus or dir>..." + "\n" +
+							"       SlitherLink -pack <corpus> <board file or dir>..." + "\n" +
+							"       SlitherLink -unpack <corpus> <board file>" + "\n" +
+							"       SlitherLink -frontier [-list n] <board file or dir>..." + "\n" +
+							"       SlitherLink -generate [-size rows cols] [-count n] [-difficulty easy|medium|hard]" + "\n" +
+							"                  [-threads n] [-seed n] <board file or corpus>" + "\n" +
+							"       SlitherLink -serve [-port n] [-threads n]");
+	}
+	
+	/**
+	 * solves every puzzle passed after the options without the menu
+	 * 
+	 * @param args
+	 * 		-batch [-threads n] [-out dir] [-count limit] [-cache dir] paths...,
+	 * 		-count 2 checks every puzzle has a unique solution, -cache keeps the
+	 * 		solutions in dir for later runs
+	 */
+	private static void batch(String[] args) {
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		File outDir = null;
+		int countLimit = 0;
+		File cacheDir = null;
+		ArrayList<String> paths = new ArrayList<String>();
+		try {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].equals("-threads")) {
+					numThreads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-out")) {
+					outDir = new File(args[++i]);
+				} else if (args[i].equals("-count")) {
+					countLimit = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-cache")) {
+					cacheDir = new File(args[++i]);
+				} else {
+					paths.add(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			paths.clear();
+		}
+		if (paths.isEmpty() || numThreads < 1 || countLimit < 0) {
+			printUsage();
+			return;
+		}
+		BatchSolver batchSolver = new BatchSolver(numThreads, outDir);
+		batchSolver.setCountLimit(countLimit);
+		if (cacheDir != null) {
+			batchSolver.setCache(new SolutionCache(CACHE_CAPACITY, cacheDir));
+		}
+		batchSolver.run(BatchSolver.listPuzzles(paths), System.out);
+	}
+	
+	/**
+	 * converts text boards to a corpus or a corpus to a text file
+	 * 
+	 * @param args
+	 * 		-pack corpus paths... or -unpack corpus file
+	 */
+	private static void convert(String[] args) {
+		if (args.length < 3 || (args[0].equals("-unpack") && args.length != 3)) {
+			printUsage();
+			return;
+		}
+		try {
+			int count;
+			if (args[0].equals("-pack")) {
+				List<String> paths = Arrays.asList(args).subList(2, args.length);
+				count = Corpus.pack(BatchSolver.listPuzzles(paths), args[1]);
+			} else {
+				Writer writer = new BufferedWriter(new FileWriter(args[2]));
+				try {
+					count = new Corpus(args[1]).unpack(writer);
+				} finally {
+					writer.close();
+				}
+			}
+			System.out.println(">> SlitherLink: " + count + " puzzles converted");
+		} catch (IOException e) {
+			System.out.println(">> SlitherLink: " + e.getMessage());
 		}
 	}
 	
+	/**
+	 * counts the solutions of every puzzle with the FrontierSolver and
+	 * prints the first ones
+	 * 
+	 * @param args
+	 * 		-frontier [-list n] paths...
+	 */
+	private static void frontier(String[] args) {
+		int numListed = 0;
+		ArrayList<String> paths = new ArrayList<String>();
+		try {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].equals("-list")) {
+					numListed = Integer.parseInt(args[++i]);
+				} else {
+					paths.add(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			paths.clear();
+		}
+		if (paths.isEmpty()) {
+			printUsage();
+			return;
+		}
+		for (File file : BatchSolver.listPuzzles(paths)) {
+			try {
+				List<Board> boards = Board.readAll(file.getPath());
+				for (int k = 0; k < boards.size(); k++) {
+					long startX = System.nanoTime();
+					FrontierSolver frontierSolver = new FrontierSolver(boards.get(k));
+					BigInteger count = frontierSolver.countSolutions();
+					double sec = (double)(System.nanoTime() - startX) / 1000000000.0d;
+					System.out.println(">> Frontier: " + file.getPath() + (boards.size() > 1 ? "#" + (k + 1) : "")
+							+ ", " + count + " solutions"
+							+ "\n\t" + "-> States: " + frontierSolver.getMaxStates()
+							+ "\n\t" + "-> Time: " + Double.toString(sec));
+					Iterator<Board> solutions = frontierSolver.solutions();
+					for (int i = 0; i < numListed && solutions.hasNext(); i++) {
+						printBoard(solutions.next(), true);
+					}
+				}
+			} catch (IOException e) {
+				System.out.println(">> Frontier: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * generates puzzles and writes them to a text file or a corpus
+	 * 
+	 * @param args
+	 * 		-generate [-size rows cols] [-count n] [-difficulty name] [-threads n] [-seed n] file
+	 */
+	private static void generate(String[] args) {
+		int numRows = 10;
+		int numCols = 10;
+		int count = 1;
+		int difficulty = Generator.EASY;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		String out = null;
+		try {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].equals("-size")) {
+					numRows = Integer.parseInt(args[++i]);
+					numCols = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-count")) {
+					count = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-difficulty")) {
+					difficulty = Arrays.asList(Generator.DIFFICULTY_NAMES).indexOf(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					numThreads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else {
+					out = args[i];
+				}
+			}
+		} catch (RuntimeException e) {
+			out = null;
+		}
+		if (out == null || count < 1 || numThreads < 1 || difficulty < 0 || numRows < 2 || numCols < 2) {
+			printUsage();
+			return;
+		}
+		long startX = System.nanoTime();
+		List<Board> puzzles = new Generator(numRows, numCols, difficulty).generate(count, seed, numThreads);
+		double sec = (double)(System.nanoTime() - startX) / 1000000000.0d;
+		try {
+			Generator.write(puzzles, out);
+		} catch (IOException e) {
+			System.out.println(">> Generator: " + e.getMessage());
+			return;
+		}
+		int numClues = 0;
+		for (Board puzzle : puzzles) {
+			for (int cell = 0; cell < puzzle.getNumCells(); cell++) {
+				if (puzzle.getConstraint(cell) != Board.NO_CONSTRAINT) {
+					numClues++;
+				}
+			}
+		}
+		System.out.println(">> Generator: " + puzzles.size() + " puzzles written to " + out
+				+ "\n\t" + "-> Clues: " + String.format("%.1f%%", 100.0d * numClues / (puzzles.size() * numRows * numCols))
+				+ "\n\t" + "-> Time: " + Double.toString(sec)
+				+ "\n\t" + "-> Puzzles/min: " + String.format("%.1f", 60 * puzzles.size() / sec));
+	}
+	
+	/**
+	 * serves solve requests on the loopback address until the process is
+	 * killed
+	 * 
+	 * @param args
+	 * 		-serve [-port n] [-threads n]
+	 */
+	private static void serve(String[] args) {
+		int port = SolverService.DEFAULT_PORT;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 1; i < args.length; i++) {
+				if (args[i].equals("-port")) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-threads")) {
+					numThreads = Integer.parseInt(args[++i]);
+				} else {
+					numThreads = 0;
+				}
+			}
+		} catch (RuntimeException e) {
+			numThreads = 0;
+		}
+		if (numThreads < 1 || port < 0 || port > 65535) {
+			printUsage();
+			return;
+		}
+		SolverService service = new SolverService(port, numThreads);
+		try {
+			service.start();
+		} catch (IOException e) {
+			System.out.println(">> Service: " + e.getMessage());
+			return;
+		}
+		System.out.println(">> Service: POST puzzles to http://127.0.0.1:" + service.getPort() + "/solve"
+				+ "\n\t" + "-> Threads: " + numThreads);
+	}
+	
 	private static void reset() {
-		board = new Board(filename);
+		board = original.deepCopy();
 		solver = new Solver(board);
+		tracker = new MoveTracker(board);
 	}
 	
 	private static void gameLoop() {
@@ -69,7 +331,7 @@ public class SlitherLink {
 				System.out.print(">> Move: ");
 				String move = reader.readLine();
 				if (move.equals("done")) {
-					isSolved = solver.checkIfSolved();
+					isSolved = tracker.isSolved();
 					if (isSolved) {
 						/* log total time */
 						long stopX = System.nanoTime();
@@ -84,6 +346,9 @@ public class SlitherLink {
 					break;
 				} else {
 					makeMove(move);
+					if (tracker.getNumConflicts() > 0) {
+						System.out.println(">> Move: " + tracker.getNumConflicts() + " conflicts");
+					}
 				}
 				System.out.print("\n");
 			} catch (IOException e) {
@@ -99,12 +364,27 @@ public class SlitherLink {
 		System.out.println();
 		/* log start time */
 		long startX = System.nanoTime();
-		solver.SATsolve();
+		solver.setTiming(true);
+		/* every deduction is printed as a move, on a thread of its own so the solver does not wait for the console */
+		AsyncDeductionListener moves = new AsyncDeductionListener(System.out);
+		solver.setDeductionListener(moves);
+		/* the solver's summary is printed here once the moves are drained, so the time comes last as before */
+		solver.setVerbose(false);
+		long startS = System.nanoTime();
+		solver.SATsolve(Runtime.getRuntime().availableProcessors());
+		long stopS = System.nanoTime();
+		moves.close();
+		if (!solver.checkIfSolved()) {
+			System.out.println(">> Solver: puzzle not solved");
+		}
+		System.out.println(">> Solver: Finished."
+				+ "\n\t" + "-> Time: " + Double.toString((double)(stopS - startS) / 1000000000.0d));
 		printBoard(board, false);
 		/* log total time */
 		long stopX = System.nanoTime();
 		double sec = (double)(stopX - startX) / 1000000000.0d;
 		System.out.println("\n>> Puzzle Solved!\n\t-> Time: " + Double.toString(sec));
+		System.out.println(solver.getStatistics().toString());
 		printBoard(board, true);
 		reset();
 	}
@@ -144,11 +424,18 @@ public class SlitherLink {
 	 *            whether or not 'negative' edges should be displayed
 	 */
 	private static void printBoard(Board board, boolean printNeat) {
-		if (printNeat) {
-			System.out.print("\n" + board.toString().replace('x', ' '));
-		} else {
-			System.out.print("\n" + board.toString());
+		/* the buffer is kept between calls, boards are rendered into it and printed at once */
+		if (printBuffer == null || printBuffer.capacity() < board.getRenderSize() + 1) {
+			printBuffer = new StringBuilder(board.getRenderSize() + 1);
+		}
+		printBuffer.setLength(0);
+		printBuffer.append('\n');
+		try {
+			board.render(printBuffer, printNeat);
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
+		System.out.print(printBuffer);
 	}
 	
 	/**
@@ -168,17 +455,17 @@ public class SlitherLink {
 				/* set the appropriate edge */
 				Edge edge = null;
 				if (dir.equals("l")) {
-					edge = board.getEdges_v().get(row).get(col);
-					edge.toggleValue();
+					edge = board.getEdge(row, col, Edge.VERTICAL);
+					tracker.toggle(edge.getId());
 				} else if (dir.equals("r")) {
-					edge = board.getEdges_v().get(row).get(col + 1);
-					edge.toggleValue();
+					edge = board.getEdge(row, col + 1, Edge.VERTICAL);
+					tracker.toggle(edge.getId());
 				} else if (dir.equals("t")) {
-					edge = board.getEdges_h().get(row).get(col);
-					edge.toggleValue();
+					edge = board.getEdge(row, col, Edge.HORIZONTAL);
+					tracker.toggle(edge.getId());
 				} else if (dir.equals("b")) {
-					edge = board.getEdges_h().get(row + 1).get(col);
-					edge.toggleValue();
+					edge = board.getEdge(row + 1, col, Edge.HORIZONTAL);
+					tracker.toggle(edge.getId());
 				}
 			}
 		} catch (Exception e) {
@@ -0,0 +1,303 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * caches the solutions of puzzles under a canonical form of their clues,
+ * the least of the 8 rotations and reflections of the clue grid, so a
+ * rotated or mirrored puzzle is found under the same entry. solutions are
+ * kept as bitsets of the positive edges in the canonical orientation and
+ * mapped back to the orientation of the board looked up. the most
+ * recently used entries are held in memory, every entry can also be kept
+ * in a directory as a one puzzle Corpus file. all methods are thread safe
+ *
+ * @author Kyler
+ *
+ */
+public class SolutionCache {
+	/* transform bits, applied in this order */
+	private static final int FLIP_ROWS = 1;
+	private static final int FLIP_COLS = 2;
+	private static final int TRANSPOSE = 4;
+	private static final int NUM_TRANSFORMS = 8;
+	private LinkedHashMap<Key, long[]> entries;
+	/* directory of the disk tier, null to keep entries in memory only */
+	private File dir;
+	private long numHits;
+	private long numMisses;
+	
+	/**
+	 * canonical clue grid, compared by value
+	 *
+	 * @author Kyler
+	 */
+	private static final class Key {
+		private final int numRows;
+		private final int numCols;
+		private final byte[] clues;
+		private final int hash;
+		
+		public Key(int numRows, int numCols, byte[] clues) {
+			this.numRows = numRows;
+			this.numCols = numCols;
+			this.clues = clues;
+			this.hash = 31 * (31 * numRows + numCols) + Arrays.hashCode(clues);
+		}
+		
+		public int hashCode() {
+			return hash;
+		}
+		
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return k.hash == hash && k.numRows == numRows && k.numCols == numCols && Arrays.equals(k.clues, clues);
+		}
+		
+		/* return 64 bit FNV-1a hash of the key, names the entry on disk */
+		public long longHash() {
+			long h = 0xCBF29CE484222325L;
+			h = (h ^ numRows) * 0x100000001B3L;
+			h = (h ^ numCols) * 0x100000001B3L;
+			for (byte clue : clues) {
+				h = (h ^ (clue & 0xFF)) * 0x100000001B3L;
+			}
+			return h;
+		}
+	}
+	
+	/**
+	 * @param capacity
+	 * 		number of entries held in memory
+	 * @param dir
+	 * 		directory of the disk tier, created if missing, or null for none
+	 */
+	public SolutionCache(final int capacity, File dir) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity " + capacity);
+		}
+		this.dir = dir;
+		if (dir != null) {
+			dir.mkdirs();
+		}
+		/* access order, so the eldest entry is the least recently used */
+		entries = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			
+			protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	public synchronized long getNumHits() {
+		return numHits;
+	}
+	
+	public synchronized long getNumMisses() {
+		return numMisses;
+	}
+	
+	/* return number of entries held in memory */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * sets every edge of the board to the cached solution of its clues, the
+	 * board is left unchanged if there is none
+	 *
+	 * @return true if a solution was found
+	 */
+	public boolean lookup(Board board) {
+		int t = canonicalTransform(board);
+		Key key = transformClues(board, t);
+		long[] solution;
+		synchronized (this) {
+			solution = entries.get(key);
+		}
+		if (solution == null && dir != null) {
+			solution = read(key);
+			if (solution != null) {
+				synchronized (this) {
+					entries.put(key, solution);
+				}
+			}
+		}
+		synchronized (this) {
+			if (solution == null) {
+				numMisses++;
+				return false;
+			}
+			numHits++;
+		}
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			int k = transformEdge(board, t, id);
+			board.setEdgeValue(id, (solution[k >>> 6] & (1L << k)) != 0 ? Edge.POSITIVE : Edge.NEGATIVE);
+		}
+		return true;
+	}
+	
+	/**
+	 * caches the positive edges of the board as the solution of its clues,
+	 * the board should be solved
+	 */
+	public void store(Board board) {
+		int t = canonicalTransform(board);
+		Key key = transformClues(board, t);
+		long[] solution = new long[(board.getNumEdges() + 63) >>> 6];
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (board.isPositive(id)) {
+				int k = transformEdge(board, t, id);
+				solution[k >>> 6] |= 1L << k;
+			}
+		}
+		synchronized (this) {
+			entries.put(key, solution);
+		}
+		if (dir != null) {
+			write(key, solution);
+		}
+	}
+	
+	/***********************************************************************************************************************
+	 ****************************************************** SYMMETRY *******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* return the transform giving the least clue grid, ordered by rows, columns and then clues in row-major order */
+	private static int canonicalTransform(Board board) {
+		int best = 0;
+		Key min = transformClues(board, 0);
+		for (int t = 1; t < NUM_TRANSFORMS; t++) {
+			Key key = transformClues(board, t);
+			if (compare(key, min) < 0) {
+				best = t;
+				min = key;
+			}
+		}
+		return best;
+	}
+	
+	private static int compare(Key a, Key b) {
+		if (a.numRows != b.numRows) {
+			return a.numRows - b.numRows;
+		}
+		for (int c = 0; c < a.clues.length; c++) {
+			if (a.clues[c] != b.clues[c]) {
+				return a.clues[c] - b.clues[c];
+			}
+		}
+		return 0;
+	}
+	
+	/* return the clue grid of the board under the transform */
+	private static Key transformClues(Board board, int t) {
+		int numRows = board.getNumRows();
+		int numCols = board.getNumCols();
+		int toRows = (t & TRANSPOSE) != 0 ? numCols : numRows;
+		int toCols = (t & TRANSPOSE) != 0 ? numRows : numCols;
+		byte[] clues = new byte[numRows * numCols];
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				int tm = (t & FLIP_ROWS) != 0 ? numRows - 1 - m : m;
+				int tn = (t & FLIP_COLS) != 0 ? numCols - 1 - n : n;
+				int cell = (t & TRANSPOSE) != 0 ? tn * toCols + tm : tm * toCols + tn;
+				clues[cell] = (byte) board.getConstraint(m * numCols + n);
+			}
+		}
+		return new Key(toRows, toCols, clues);
+	}
+	
+	/* return id of the edge under the transform, in a board of the transformed size */
+	private static int transformEdge(Board board, int t, int id) {
+		int numRows = board.getNumRows();
+		int numCols = board.getNumCols();
+		int toCols = (t & TRANSPOSE) != 0 ? numRows : numCols;
+		/* the edge is the segment from node (i, j) to (i + di, j + dj) */
+		int i = board.getEdgeM(id);
+		int j = board.getEdgeN(id);
+		int di = board.getEdgeAlignment(id) == Edge.HORIZONTAL ? 0 : 1;
+		int dj = 1 - di;
+		if ((t & FLIP_ROWS) != 0) {
+			i = numRows - i - di;
+		}
+		if ((t & FLIP_COLS) != 0) {
+			j = numCols - j - dj;
+		}
+		if ((t & TRANSPOSE) != 0) {
+			int swap = i;
+			i = j;
+			j = swap;
+			di = dj;
+		}
+		/* same numbering as Board.getEdgeId on a board of the transformed size */
+		int toRows = (t & TRANSPOSE) != 0 ? numCols : numRows;
+		return di == 0 ? i * toCols + j : (toRows + 1) * toCols + i * (toCols + 1) + j;
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** DISK *********************************************************
+	 ***********************************************************************************************************************/
+	
+	private File file(Key key) {
+		return new File(dir, String.format("%016x", key.longHash()) + Corpus.EXTENSION);
+	}
+	
+	/* return the solution of the key kept on disk, null if there is none */
+	private long[] read(Key key) {
+		File file = file(key);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			Corpus corpus = new Corpus(file.getPath());
+			if (corpus.size() != 1 || !corpus.hasSolution(0)) {
+				return null;
+			}
+			Board board = corpus.getSolution(0);
+			/* a different puzzle of the same hash */
+			if (!transformClues(board, 0).equals(key)) {
+				return null;
+			}
+			long[] solution = new long[(board.getNumEdges() + 63) >>> 6];
+			for (int id = 0; id < board.getNumEdges(); id++) {
+				if (board.isPositive(id)) {
+					solution[id >>> 6] |= 1L << id;
+				}
+			}
+			return solution;
+		} catch (IOException e) {
+			System.out.println(">> SolutionCache: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/* keeps the solution of the key on disk, written to a temporary file first so readers never see part of it */
+	private void write(Key key, long[] solution) {
+		File file = file(key);
+		File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+		Board board = new Board(key.numRows, key.numCols, key.clues.clone());
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			board.setEdgeValue(id, (solution[id >>> 6] & (1L << id)) != 0 ? Edge.POSITIVE : Edge.NEGATIVE);
+		}
+		try {
+			Corpus.Builder builder = new Corpus.Builder(tmp.getPath());
+			try {
+				builder.add(board, true);
+			} finally {
+				builder.close();
+			}
+			file.delete();
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+			}
+		} catch (IOException e) {
+			System.out.println(">> SolutionCache: " + e.getMessage());
+			tmp.delete();
+		}
+	}
+}
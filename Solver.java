@@ -1,5 +1,12 @@
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -8,8 +15,89 @@ import java.util.Iterator;
  */
 public class Solver {
 	private Board board;
-	private ArrayList<Edge> tracedEdges;
-	private ArrayList<Edge> loop;
+	/* result of the last loop check, an edge on the first closed loop found or -1 */
+	private int loopEdge = -1;
+	private int loopSize;
+	private boolean loopIsSimple;
+	private int numPositive;
+	/* scratch space of the loop check, an edge or node is visited if its stamp is that of the check */
+	private int[] stack;
+	private int[] nodeEdges = new int[4];
+	private int[] edgeStamps;
+	private int[] nodeStamps;
+	private int stamp;
+	/* edges set positive since the last loop check, only their components can have closed a loop */
+	private int[] newPositive;
+	private int numNewPositive;
+	/* true if the next loop check must scan the whole board */
+	private boolean checkAllLoops;
+	/* cells and nodes whose rules must be re-evaluated, cell ids first, then node ids */
+	private int[] queue;
+	private boolean[] queued;
+	private int queueHead;
+	private int queueSize;
+	/* per cell, right then below, true if a clue rules out the loop around the cell and that neighbour, null until initQueue, clues never change */
+	private boolean[] excludedLoops;
+	/* scratch space and result of the last probe */
+	private int[] probeValue;
+	private int[] probeEdges;
+	private int[] forcedEdges;
+	private int[] forcedValues;
+	private int probeTag;
+	/* implications learned by the probes of probeSerial, null outside it */
+	private ImplicationGraph implications;
+	/* number of edges probed by each task of a parallel round */
+	private static final int PROBE_BATCH = 32;
+	private static final String[] PROBE_TAGS = { "SAT.1", "SAT.2", "SAT.3" };
+	private static final String IMPLICATION_TAG = "IMP";
+	/* rule tags of the edges of a zero, in cell edge order */
+	private static final String[] ZERO_TAGS = { "Z.0", "Z.1", "Z.2", "Z.3" };
+	/* rule tags of the pattern table deductions, by constraint */
+	private static final String[] PATTERN_TAGS = { "P.0", "P.1", "P.2", "P.3" };
+	/* edge ids of the neighbourhood of the cell the pattern rule is applied to */
+	private int[] window = new int[PatternTable.NUM_EDGES];
+	/* value the search tries first for the edge picked last */
+	private int searchValue;
+	/* a parallel count splits the search into about this many subtrees per thread */
+	private static final int CUBES_PER_THREAD = 8;
+	/* how SATsolve completes a board probing could not solve */
+	public static final int COMPLETE_NONE = 0;
+	public static final int COMPLETE_CDCL = 1;
+	public static final int COMPLETE_SEARCH = 2;
+	private int completion = COMPLETE_CDCL;
+	/* budget of every CDCLSolver completing or counting the board, a deadline in System.nanoTime() if timed */
+	private long conflictLimit = Long.MAX_VALUE;
+	private long deadline;
+	private boolean timed;
+	/* true if the last completion or count gave up because the budget ran out */
+	private boolean exhausted;
+	/* rule families, package-private so single rules can be applied by Benchmark */
+	static final int RULE_FALSE_LOOP = 0;
+	static final int RULE_INCIDENT_EDGES_CELL = 1;
+	static final int RULE_INCIDENT_EDGES_NODE = 2;
+	static final int RULE_ZERO = 3;
+	static final int RULE_PATTERN = 4;
+	static final int RULE_ADJACENT_THREES = 5;
+	static final int RULE_DIAGONAL_THREES = 6;
+	static final String[] RULE_NAMES = { "falseLoop", "incidentEdges(Cell)", "incidentEdges(Node)", "zero", "pattern",
+			"adjacentThrees", "diagonalThrees" };
+	/* families of the edges forced by probing, in PROBE_TAGS order */
+	static final int RULE_SAT = 7;
+	/* family of the edges set by the implications learned while probing */
+	static final int RULE_IMPLICATION = 10;
+	/* counters per rule family, the family of the rule running is charged for its deductions */
+	private SolverStatistics statistics = new SolverStatistics();
+	private int activeRule;
+	/* whether the time spent in each rule is measured */
+	private boolean timing;
+	/* whether timings are printed */
+	private boolean verbose = true;
+	/* thrown by the rules, refilled for every contradiction so probes that fail allocate nothing */
+	private ConsistencyException contradiction = ConsistencyException.preallocated();
+	/* notified of every deduction */
+	private DeductionListener listener = DeductionListener.NONE;
+	/* number of edges set by assertEdge, including those undone after probes */
+	private long numDeductions;
 	
 	public Solver() {
 		this(null);
@@ -17,97 +105,107 @@ public class Solver {
 	
 	public Solver(Board board) {
 		this.board = board;
-		this.tracedEdges = new ArrayList<Edge>(50);
 	}
 	
-	/**
-	 * container for node coordinates
-	 * 
-	 * @author Kyler
-	 */
-	private class Node {
-		private int i;
-		private int j;
-		
-		public Node(int i, int j) {
-			this.i = i;
-			this.j = j;
-		}
-		
-		public String toString() {
-			return i + " " + j + " n";
+	public int getCompletion() {
+		return completion;
+	}
+	
+	/* sets how SATsolve completes a board probing could not solve, COMPLETE_NONE, COMPLETE_CDCL or COMPLETE_SEARCH */
+	public void setCompletion(int completion) {
+		this.completion = completion;
+	}
+	
+	public long getConflictLimit() {
+		return conflictLimit;
+	}
+	
+	/* sets the conflicts after which a CDCLSolver completing or counting the board gives up, for each subtree of a parallel count */
+	public void setConflictLimit(long conflictLimit) {
+		this.conflictLimit = conflictLimit;
+	}
+	
+	/* sets the System.nanoTime() after which probing, completing or counting the board gives up */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+		this.timed = true;
+	}
+	
+	/* return true if the last SATsolve or countSolutions gave up because the conflicts or the time ran out, or a worker thread failed */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+	
+	/* return true if the deadline has passed, the board is then given up as exhausted */
+	private boolean pastDeadline() {
+		if (timed && System.nanoTime() - deadline > 0) {
+			exhausted = true;
+			return true;
 		}
+		return false;
+	}
+	
+	public boolean isVerbose() {
+		return verbose;
+	}
+	
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+	
+	public long getNumDeductions() {
+		return numDeductions;
+	}
+	
+	public DeductionListener getDeductionListener() {
+		return listener;
+	}
+	
+	/* sets the listener notified of every deduction, null for none */
+	public void setDeductionListener(DeductionListener listener) {
+		this.listener = listener == null ? DeductionListener.NONE : listener;
+	}
+	
+	public SolverStatistics getStatistics() {
+		return statistics;
+	}
+	
+	public boolean isTiming() {
+		return timing;
+	}
+	
+	public void setTiming(boolean timing) {
+		this.timing = timing;
 	}
 	
 	public Board getBoard() {
 		return board;
 	}
-
+	
 	public void setBoard(Board board) {
 		this.board = board;
+		this.excludedLoops = null;
 	}
 	
+	/**
+	 * @return edges of the closed loop found by the last check, in loop
+	 * order, or null if no single closed loop was found
+	 */
 	public ArrayList<Edge> getLoop() {
-		return loop;
-	}
-
-	public void setLoop(ArrayList<Edge> loop) {
-		this.loop = loop;
-	}
-
-	/* returns nodes extending in each legal direction of the passed node */
-	private ArrayList<Edge> getIncidentEdges(Node node) {
-		return getIncidentEdges(node.i, node.j);
-	}
-	
-	/* returns nodes extending in each legal direction of the passed node coordinates */
-	private ArrayList<Edge> getIncidentEdges(int i, int j) {
-		ArrayList<Edge> incidentEdges = new ArrayList<Edge>(4);
-		/* add left edge */
-		if (j != 0) {
-			incidentEdges.add(board.getEdge(i, j-1, Edge.HORIZONTAL));
-		}
-		/* add right edge */
-		if (j != board.getCells().get(0).size()) {
-			incidentEdges.add(board.getEdge(i, j, Edge.HORIZONTAL));
-		}
-		/* add top edge */
-		if (i != 0) {
-			incidentEdges.add(board.getEdge(i-1, j, Edge.VERTICAL));
-		}
-		/* add bottom edge */
-		if (i != board.getCells().size()) {
-			incidentEdges.add(board.getEdge(i, j, Edge.VERTICAL));
-		}
-		return incidentEdges;
-	}
-	
-	/* returns incident nodes of passed edge */
-	private ArrayList<Node> getIncidentNodes(Edge edge) {
-		ArrayList<Node> incidentNodes = new ArrayList<Node>(2);
-		int m = edge.getM();
-		int n = edge.getN();
-		/* edge is horizontal */
-		if (edge.getAlignment() == Edge.HORIZONTAL) {
-			incidentNodes.add(new Node(m, n));
-			incidentNodes.add(new Node(m, n + 1));
-		/* edge is vertical */
-		} else {
-			incidentNodes.add(new Node(m, n));
-			incidentNodes.add(new Node(m + 1, n));
-		}
-		return incidentNodes;
-	}
-	
-	/* returns all nodes of this Solver's board in one ArrayList */
-	private ArrayList<Node> getAllNodes() {
-		ArrayList<Node> nodes = new ArrayList<Node>((board.getNumRows() + 1) * (board.getNumCols() + 1));
-		for (int i = 0; i < board.getNumRows() + 1; i++) {
-			for (int j = 0; j < board.getNumCols() + 1; j++) {
-				nodes.add(new Node(i, j));
-			}
+		if (loopEdge < 0 || !loopIsSimple) {
+			return null;
 		}
-		return nodes;
+		ArrayList<Edge> loop = new ArrayList<Edge>(loopSize);
+		int id = loopEdge;
+		int node = board.getEdgeNode(id, 0);
+		do {
+			loop.add(new Edge(board, id));
+			/* step to the end of the edge away from the node */
+			node = board.getEdgeNode(id, 0) == node ? board.getEdgeNode(id, 1) : board.getEdgeNode(id, 0);
+			getPositiveEdges(node, nodeEdges);
+			id = (nodeEdges[0] == id) ? nodeEdges[1] : nodeEdges[0];
+		} while (id != loopEdge);
+		return loop;
 	}
 	
 	private boolean bruteForce(ArrayList<Edge> edges, boolean setNextEdge, int i) {
@@ -138,116 +236,661 @@ public class Solver {
 	}
 	
 	/**
-	 * returns whether or not the passed value is consistent for the
-	 * passed board, at the passed board position
+	 * attempts to solve this Solver's board by depth-first search, applying
+	 * the ruleset after every decision and backtracking on inconsistency
+	 * 
+	 * @return true if the board was solved
+	 */
+	public boolean searchSolve() {
+		if (!applyRules()) {
+			return false;
+		}
+		return search();
+	}
+	
+	/* searches below the current board, which must be a consistent fixpoint of the ruleset */
+	private boolean search() {
+		int numEdges = board.getNumEdges();
+		/* trail mark, edge and second value of each decision */
+		int[] marks = new int[numEdges];
+		int[] edges = new int[numEdges];
+		int[] retry = new int[numEdges];
+		int depth = 0;
+		int id;
+		boolean consistent = true;
+		while (true) {
+			if (consistent) {
+				id = pickSearchEdge();
+				if (id < 0) {
+					if (checkIfSolved()) {
+						return true;
+					}
+					consistent = false;
+					continue;
+				}
+				/* a path end is most likely to continue along the edge */
+				int value = searchValue;
+				marks[depth] = board.getTrailSize();
+				edges[depth] = id;
+				retry[depth] = -value;
+				depth++;
+				consistent = tryEdge(id, value);
+			} else {
+				/* backtrack to the last decision with a value left to try */
+				while (depth > 0 && retry[depth - 1] == Edge.EMPTY) {
+					depth--;
+					board.undo(marks[depth]);
+				}
+				if (depth == 0) {
+					return false;
+				}
+				board.undo(marks[depth - 1]);
+				int value = retry[depth - 1];
+				retry[depth - 1] = Edge.EMPTY;
+				consistent = tryEdge(edges[depth - 1], value);
+			}
+		}
+	}
+	
+	/**
+	 * counts the solutions of this Solver's board up to limit, a limit of 2
+	 * tells a unique puzzle from an ambiguous one. after the ruleset and
+	 * probing, the CDCLSolver finds a solution, blocks it and searches
+	 * again until it finds no more or reaches the limit. with more than one
+	 * thread the search is split into subtrees counted in parallel. the
+	 * board is left holding the first solution found, that of the first
+	 * subtree holding one in a parallel count, so it does not depend on
+	 * thread timing. if there is none the board is left at the fixpoint of
+	 * the ruleset and probing
+	 * 
+	 * @return number of solutions, at most limit, or CDCLSolver.UNKNOWN if
+	 * 		the budget ran out first
+	 */
+	public int countSolutions(int limit, int numThreads) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit " + limit);
+		}
+		long startX = System.nanoTime();
+		int count = 0;
+		exhausted = false;
+		if (applyRules()) {
+			/* edges forced by probing hold in every solution, so the search starts below them */
+			if (numThreads > 1) {
+				probeParallel(numThreads);
+				count = exhausted ? CDCLSolver.UNKNOWN : countParallel(limit, numThreads);
+			} else {
+				probeSerial();
+				count = exhausted ? CDCLSolver.UNKNOWN : newCDCLSolver(board).countSolutions(limit);
+				exhausted = count == CDCLSolver.UNKNOWN;
+			}
+		}
+		/* log count time */
+		long stopX = System.nanoTime();
+		double sec = (double)(stopX - startX) / 1000000000.0d;
+		if (verbose) {
+			System.out.println(">> Solver: " + (exhausted ? "unknown number of" : count + (count == limit ? " or more" : "")) + " solutions"
+					+ "\n\t" + "-> Time: " + Double.toString(sec));
+		}
+		return count;
+	}
+	
+	/* return a CDCLSolver of the board with the budget of this Solver */
+	private CDCLSolver newCDCLSolver(Board board) {
+		CDCLSolver cdcl = new CDCLSolver(board);
+		cdcl.setConflictLimit(conflictLimit);
+		if (timed) {
+			cdcl.setDeadline(deadline);
+		}
+		return cdcl;
+	}
+	
+	/* return true if this Solver's board has exactly one solution, which is left on the board */
+	public boolean isUnique(int numThreads) {
+		return countSolutions(2, numThreads) == 1;
+	}
+	
+	/**
+	 * splits the search below the current fixpoint into subtrees, each
+	 * counted by a CubeCount on its own copy of the board. the subtrees are
+	 * disjoint, so their counts add up
+	 * 
+	 * @return number of solutions found, at most limit, or
+	 * 		CDCLSolver.UNKNOWN if a subtree ran out of budget before the limit
+	 * 		was reached
+	 */
+	private int countParallel(int limit, int numThreads) {
+		int maxDepth = 0;
+		while ((1 << maxDepth) < numThreads * CUBES_PER_THREAD) {
+			maxDepth++;
+		}
+		ArrayList<int[]> cubes = new ArrayList<int[]>();
+		int mark = board.getTrailSize();
+		split(new int[maxDepth], 0, maxDepth, cubes);
+		board.undo(mark);
+		AtomicInteger found = new AtomicInteger();
+		AtomicInteger first = new AtomicInteger(Integer.MAX_VALUE);
+		ArrayList<CubeCount> tasks = new ArrayList<CubeCount>();
+		for (int k = 0; k < cubes.size(); k++) {
+			tasks.add(new CubeCount(this, board.deepCopy(), cubes.get(k), k, limit, found, first));
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		Board solution = null;
+		try {
+			/* counts are returned in the order they were submitted, the first solution is taken from the first subtree holding one, which every subtree before it lets finish */
+			List<Future<Integer>> results = pool.invokeAll(tasks);
+			for (int k = 0; k < results.size(); k++) {
+				if (results.get(k).get() > 0 && solution == null) {
+					solution = tasks.get(k).solver.board;
+				}
+				statistics.add(tasks.get(k).solver.statistics);
+				numDeductions += tasks.get(k).solver.numDeductions;
+				exhausted |= tasks.get(k).solver.exhausted;
+			}
+		} catch (InterruptedException e) {
+			/* the subtrees not counted make found a lower bound, not a count */
+			exhausted = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			exhausted = true;
+		} finally {
+			pool.shutdown();
+		}
+		if (solution != null) {
+			for (int id = 0; id < board.getNumEdges(); id++) {
+				if (!board.isKnown(id)) {
+					board.setEdgeValue(id, solution.getEdgeValue(id));
+				}
+			}
+		}
+		if (found.get() >= limit) {
+			exhausted = false;
+			return limit;
+		}
+		return exhausted ? CDCLSolver.UNKNOWN : found.get();
+	}
+	
+	/**
+	 * collects the decisions leading to every consistent node of the search
+	 * tree at maxDepth, or to a leaf above it. a decision is stored as the
+	 * edge id if positive and as its complement if negative
+	 */
+	private void split(int[] decisions, int depth, int maxDepth, List<int[]> cubes) {
+		int id = pickSearchEdge();
+		if (id < 0 || depth == maxDepth) {
+			cubes.add(Arrays.copyOf(decisions, depth));
+			return;
+		}
+		int value = searchValue;
+		int mark;
+		for (int k = 0; k < 2; k++, value = -value) {
+			mark = board.getTrailSize();
+			if (tryEdge(id, value)) {
+				decisions[depth] = value == Edge.POSITIVE ? id : ~id;
+				split(decisions, depth + 1, maxDepth, cubes);
+			}
+			board.undo(mark);
+		}
+	}
+	
+	/**
+	 * counts the solutions below a list of decisions on its own copy of the
+	 * board, sharing the count with the other subtrees
+	 * 
+	 * @author Kyler
+	 */
+	private static class CubeCount implements Callable<Integer> {
+		private Solver solver;
+		private int[] decisions;
+		private int index;
+		private int limit;
+		private AtomicInteger found;
+		private AtomicInteger first;
+		
+		public CubeCount(Solver parent, Board board, int[] decisions, int index, int limit, AtomicInteger found, AtomicInteger first) {
+			this.solver = new Solver(board);
+			this.solver.timing = parent.timing;
+			this.solver.excludedLoops = parent.excludedLoops;
+			this.solver.conflictLimit = parent.conflictLimit;
+			this.solver.deadline = parent.deadline;
+			this.solver.timed = parent.timed;
+			this.decisions = decisions;
+			this.index = index;
+			this.limit = limit;
+			this.found = found;
+			this.first = first;
+		}
+		
+		public Integer call() {
+			/* a subtree before the first one holding a solution must still be searched */
+			if (found.get() >= limit && first.get() < index) {
+				return 0;
+			}
+			solver.initQueue();
+			for (int d : decisions) {
+				if (!solver.tryEdge(d >= 0 ? d : ~d, d >= 0 ? Edge.POSITIVE : Edge.NEGATIVE)) {
+					return 0;
+				}
+			}
+			CDCLSolver cdcl = solver.newCDCLSolver(solver.board);
+			cdcl.setSharedCount(found, first, index);
+			int count = cdcl.countSolutions(limit);
+			solver.exhausted = cdcl.isExhausted();
+			return Math.max(count, 0);
+		}
+	}
+	
+	/**
+	 * picks the most constrained unknown edge: an edge leaving a path end
+	 * with the fewest unknown edges, else an edge of the constrained cell
+	 * with the fewest unknown edges, else the first unknown edge. the value
+	 * to try first is left in searchValue
+	 * 
+	 * @return id of the edge, or -1 if every edge is known
+	 */
+	private int pickSearchEdge() {
+		int best = -1;
+		int bestUnknown = Integer.MAX_VALUE;
+		int numUnknown;
+		int numPos;
+		int id;
+		int e;
+		/* path ends */
+		for (int node = 0; node < board.getNumNodes(); node++) {
+			numUnknown = 0;
+			numPos = 0;
+			id = -1;
+			for (int k = 0; k < 4; k++) {
+				e = board.getNodeEdge(node, k);
+				if (e < 0) {
+					continue;
+				}
+				if (board.isPositive(e)) {
+					numPos++;
+				} else if (!board.isKnown(e)) {
+					numUnknown++;
+					id = e;
+				}
+			}
+			if (numPos == 1 && numUnknown > 0 && numUnknown < bestUnknown) {
+				best = id;
+				bestUnknown = numUnknown;
+			}
+		}
+		if (best >= 0) {
+			searchValue = Edge.POSITIVE;
+			return best;
+		}
+		/* constrained cells */
+		for (int cell = 0; cell < board.getNumCells(); cell++) {
+			if (board.getConstraint(cell) != Board.NO_CONSTRAINT) {
+				numUnknown = 0;
+				id = -1;
+				for (int k = 0; k < 4; k++) {
+					e = board.getCellEdge(cell, k);
+					if (!board.isKnown(e)) {
+						numUnknown++;
+						id = e;
+					}
+				}
+				if (numUnknown > 0 && numUnknown < bestUnknown) {
+					best = id;
+					bestUnknown = numUnknown;
+				}
+			}
+		}
+		if (best < 0) {
+			for (id = 0; id < board.getNumEdges() && best < 0; id++) {
+				if (!board.isKnown(id)) {
+					best = id;
+				}
+			}
+		}
+		searchValue = Edge.NEGATIVE;
+		return best;
+	}
+	
+	/**
+	 * sets the edge to the passed value in place and applies the ruleset,
+	 * every deduction is left on the board's trail for the caller to undo
 	 * 
 	 * @return true if consistent, false otherwise
 	 */
-	private boolean tryEdge(Board board, BoardPosition bPos, int value) {
-		/* solver for board */
-		Solver solver = new Solver(board);
-		/* set edge of board to value */
-		Edge edge = board.getEdge(bPos.getM(), bPos.getN(), bPos.getAlignment());
-		edge.setValue(value);
-		/* try to apply rules */
-		return solver.applyRules();
+	private boolean tryEdge(int id, int value) {
+		board.setEdgeValue(id, value);
+		enqueueEdge(id);
+		return propagate();
+	}
+	
+	/**
+	 * probes the unknown edge as positive and as negative, the board is left
+	 * unchanged and the edges forced by the probes are stored in
+	 * forcedEdges and forcedValues, with the index of their tag in probeTag
+	 * 
+	 * @return number of forced edges
+	 */
+	private int probe(int id) {
+		int numEdges = board.getNumEdges();
+		if (probeValue == null || probeValue.length != numEdges) {
+			probeValue = new int[numEdges];
+			probeEdges = new int[numEdges];
+			forcedEdges = new int[numEdges];
+			forcedValues = new int[numEdges];
+		}
+		int numForced = 0;
+		int numProbeEdges;
+		int mark = board.getTrailSize();
+		int e;
+		statistics.addProbe();
+		if (!tryEdge(id, Edge.POSITIVE)) {
+			board.undo(mark);
+			probeTag = 0;
+			forcedEdges[numForced] = id;
+			forcedValues[numForced++] = Edge.NEGATIVE;
+			return numForced;
+		}
+		if (implications != null) {
+			implications.record(ImplicationGraph.literal(id, Edge.POSITIVE), mark, loopEdge >= 0);
+		}
+		/* remember the positive probe's deductions */
+		numProbeEdges = 0;
+		for (int k = mark; k < board.getTrailSize(); k++) {
+			e = board.getTrailEdge(k);
+			probeValue[e] = board.getEdgeValue(e);
+			probeEdges[numProbeEdges++] = e;
+		}
+		board.undo(mark);
+		if (!tryEdge(id, Edge.NEGATIVE)) {
+			probeTag = 1;
+			forcedEdges[numForced] = id;
+			forcedValues[numForced++] = Edge.POSITIVE;
+		} else {
+			if (implications != null) {
+				implications.record(ImplicationGraph.literal(id, Edge.NEGATIVE), mark, loopEdge >= 0);
+			}
+			/* edges both probes agree on */
+			probeTag = 2;
+			for (int k = mark; k < board.getTrailSize(); k++) {
+				e = board.getTrailEdge(k);
+				if (probeValue[e] == board.getEdgeValue(e)) {
+					forcedEdges[numForced] = e;
+					forcedValues[numForced++] = probeValue[e];
+				} else if (probeValue[e] != Edge.EMPTY && implications != null) {
+					/* the edge follows the probed edge both ways */
+					implications.setEquivalent(ImplicationGraph.literal(id, Edge.POSITIVE),
+							ImplicationGraph.literal(e, probeValue[e]));
+				}
+			}
+		}
+		board.undo(mark);
+		for (int k = 0; k < numProbeEdges; k++) {
+			probeValue[probeEdges[k]] = Edge.EMPTY;
+		}
+		return numForced;
 	}
 	
 	/**
 	 * attempts to solve this Solver's board via constraint satisfaction
 	 */
 	public void SATsolve() {
-		Iterator<BoardPosition> unknownPos;
-		Iterator<BoardPosition> edgePos;
-		BoardPosition bPos;
-		Board resultBoardWithoutEdge;
-		Board resultBoardWithEdge;
-		boolean boardChanged;
-		boolean edgeChanged;
+		SATsolve(1);
+	}
+	
+	/**
+	 * attempts to solve this Solver's board via constraint satisfaction,
+	 * probing unknown edges on the passed number of threads
+	 */
+	public void SATsolve(int numThreads) {
 		long startX = System.nanoTime();
-		do {
-			boardChanged = false;
-			unknownPos = board.getEmptyPositions().iterator();
-			while (unknownPos.hasNext()) {
-				bPos = unknownPos.next();
-				resultBoardWithEdge = board.deepCopy();
-				resultBoardWithoutEdge = board.deepCopy();
-				edgeChanged = false;
-				if (!tryEdge(resultBoardWithEdge, bPos, Edge.POSITIVE)) {
-//					System.out.println(">> Solver: Move " + bPos.toString() + " Negative");
-					try {
-						assertEdge(board.getEdge(bPos), Edge.NEGATIVE, "SAT.1");
-					} catch (ConsistencyException e) {
-						/* SHOULD NEVER HAPPEN */
-						System.out.println(e.toString());
+		exhausted = false;
+		/* probes only propagate from the probed edge, so start from a fixpoint */
+		boolean consistent = applyRules();
+		if (!consistent) {
+			/* the fixpoint already contradicts the clues, there is nothing to probe or complete */
+			if (verbose) {
+				System.out.println(">> Solver: puzzle not solved");
+			}
+		} else if (numThreads > 1) {
+			probeParallel(numThreads);
+		} else {
+			probeSerial();
+		}
+		if (consistent && completion != COMPLETE_NONE && !exhausted && !checkIfSolved()) {
+			/* probing reached a fixpoint, complete the board by search */
+			boolean solved;
+			if (completion == COMPLETE_SEARCH) {
+				solved = search();
+			} else {
+				CDCLSolver cdcl = newCDCLSolver(board);
+				solved = cdcl.solve();
+				exhausted = cdcl.isExhausted();
+			}
+			if (!solved && verbose) {
+				System.out.println(">> Solver: puzzle not solved");
+			}
+		}
+		/* log SAT time */
+		long stopX = System.nanoTime();
+		double sec = (double)(stopX - startX) / 1000000000.0d;
+		if (verbose) {
+			System.out.println(">> Solver: Finished."
+					+ "\n\t" + "-> Time: " + Double.toString(sec));
+		}
+	}
+	
+	/**
+	 * probes every unknown edge, applying forced edges as soon as they are
+	 * found, until nothing changes. the implications learned by the probes
+	 * are kept in an ImplicationGraph: before each pass the edges they force
+	 * are set, and an edge is not probed again while its probe would repeat
+	 * an earlier one
+	 */
+	private void probeSerial() {
+		int numEdges = board.getNumEdges();
+		int numForced;
+		boolean boardChanged;
+		implications = new ImplicationGraph(board);
+		try {
+			do {
+				boardChanged = false;
+				statistics.addPass();
+				if (implications.getNumImplications() > 0) {
+					implications.analyze();
+					if (implications.isInconsistent()) {
+						/* the board has no solution, as when both probes of an edge fail, probing stops and completion finds none */
+						statistics.addContradiction(RULE_IMPLICATION);
+						return;
+					}
+					if (implications.getNumForced() > 0) {
+						if (!assertImplied()) {
+							return;
+						}
+						boardChanged = true;
+					}
+				}
+				for (int id = 0; id < numEdges; id++) {
+					if (board.isKnown(id)) {
+						continue;
+					}
+					if (pastDeadline()) {
+						return;
 					}
-					edgeChanged = true;
-				} else if (!tryEdge(resultBoardWithoutEdge, bPos, Edge.NEGATIVE)) {
-//					System.out.println(">> Solver: Move " + bPos.toString() + " Positive");
+					if (!implications.needsProbe(id)) {
+						statistics.addSkippedProbe();
+						continue;
+					}
+					implications.setProbed(id);
+					numForced = probe(id);
 					try {
-						assertEdge(board.getEdge(bPos), Edge.POSITIVE, "SAT.2");
-					} catch (ConsistencyException e) {
-						/* SHOULD NEVER HAPPEN */
-						System.out.println(e.toString());
+						for (int k = 0; k < numForced; k++) {
+							activeRule = RULE_SAT + probeTag;
+							assertEdge(forcedEdges[k], forcedValues[k], PROBE_TAGS[probeTag]);
+						}
+					} catch (ConsistencyException ce) {
+						statistics.addContradiction(activeRule);
+						clearQueue();
+						return;
 					}
-					edgeChanged = true;
-				} else {
-					edgePos = board.getEmptyPositions().iterator();
-					while (edgePos.hasNext()) {
-						bPos = edgePos.next();
-						if (!board.getEdge(bPos).isKnown() &&
-								resultBoardWithoutEdge.getEdge(bPos).isKnown() &&
-								resultBoardWithEdge.getEdge(bPos).isKnown() &&
-								resultBoardWithEdge.getEdge(bPos).isPositive() == resultBoardWithoutEdge.getEdge(bPos).isPositive()) {
-							try {
-								int value = resultBoardWithEdge.getEdge(bPos).getValue();
-//								if (value == Edge.POSITIVE) {
-//									System.out.println(">> Solver: Move " + bPos.toString() + " Positive");
-//								} else {
-//									System.out.println(">> Solver: Move " + bPos.toString() + " Negative");
-//								}
-								assertEdge(board.getEdge(bPos), value, "SAT.3");
-							} catch (ConsistencyException e) {
-								/* SHOULD NEVER HAPPEN */
-								System.out.println(e.toString());
-							}
-							edgeChanged = true;
+					if (numForced > 0) {
+						/* the forced edges hold in every solution, if the rules reject them there is none */
+						if (!propagate()) {
+							return;
+						}
+						implications.update();
+						boardChanged = true;
+					}
+				}
+			} while (boardChanged);
+		} finally {
+			implications = null;
+		}
+	}
+	
+	/**
+	 * sets the edges the last analysis of the implications found, then
+	 * applies the ruleset
+	 * 
+	 * @return false if the edges or the ruleset contradict the board, which
+	 * 		then has no solution
+	 */
+	private boolean assertImplied() {
+		activeRule = RULE_IMPLICATION;
+		try {
+			for (int k = 0; k < implications.getNumForced(); k++) {
+				int lit = implications.getForced(k);
+				assertEdge(ImplicationGraph.getEdge(lit), ImplicationGraph.getValue(lit), IMPLICATION_TAG);
+			}
+		} catch (ConsistencyException ce) {
+			statistics.addContradiction(RULE_IMPLICATION);
+			clearQueue();
+			return false;
+		}
+		if (!propagate()) {
+			return false;
+		}
+		implications.update();
+		return true;
+	}
+	
+	/**
+	 * probes the unknown edges in rounds, each round probes batches of edges
+	 * against copies of the same board on a thread pool and then merges the
+	 * forced edges in edge order, so the result does not depend on the
+	 * number of threads
+	 */
+	private void probeParallel(int numThreads) {
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		ArrayList<ProbeBatch> batches = new ArrayList<ProbeBatch>();
+		int[] unknown = new int[board.getNumEdges()];
+		int numUnknown;
+		int[] forced;
+		boolean boardChanged;
+		try {
+			do {
+				if (pastDeadline()) {
+					return;
+				}
+				boardChanged = false;
+				statistics.addPass();
+				numUnknown = 0;
+				for (int id = 0; id < board.getNumEdges(); id++) {
+					if (!board.isKnown(id)) {
+						unknown[numUnknown++] = id;
+					}
+				}
+				batches.clear();
+				for (int from = 0; from < numUnknown; from += PROBE_BATCH) {
+					batches.add(new ProbeBatch(this, board.deepCopy(), unknown, from, Math.min(from + PROBE_BATCH, numUnknown)));
+				}
+				/* batches are returned in the order they were submitted */
+				List<Future<int[]>> results = pool.invokeAll(batches);
+				for (int b = 0; b < results.size(); b++) {
+					statistics.add(batches.get(b).solver.statistics);
+				}
+				try {
+					for (int b = 0; b < results.size(); b++) {
+						forced = results.get(b).get();
+						for (int k = 0; k < forced.length; k += 3) {
+							activeRule = RULE_SAT + forced[k+2];
+							boardChanged = assertEdge(forced[k], forced[k+1], PROBE_TAGS[forced[k+2]]) || boardChanged;
 						}
 					}
+				} catch (ConsistencyException ce) {
+					/* two batches forced opposite values, the board has no solution, probing stops and completion finds none */
+					statistics.addContradiction(activeRule);
+					clearQueue();
+					return;
+				}
+				if (!propagate()) {
+					return;
+				}
+			} while (boardChanged);
+		} catch (InterruptedException e) {
+			/* probing gave up before a fixpoint, so completion is skipped */
+			exhausted = true;
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			exhausted = true;
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * probes a range of edges on its own copy of the board
+	 * 
+	 * @author Kyler
+	 */
+	private static class ProbeBatch implements Callable<int[]> {
+		private Solver solver;
+		private int[] edges;
+		private int from;
+		private int to;
+		
+		public ProbeBatch(Solver parent, Board board, int[] edges, int from, int to) {
+			this.solver = new Solver(board);
+			this.solver.timing = parent.timing;
+			this.solver.excludedLoops = parent.excludedLoops;
+			this.solver.deadline = parent.deadline;
+			this.solver.timed = parent.timed;
+			this.edges = edges;
+			this.from = from;
+			this.to = to;
+		}
+		
+		/* returns edge, value and tag index of each forced edge */
+		public int[] call() {
+			int[] forced = new int[3 * (to - from)];
+			int size = 0;
+			int numForced;
+			solver.initQueue();
+			/* the edges forced before the deadline still hold, the round ends once it has passed */
+			for (int k = from; k < to && !solver.pastDeadline(); k++) {
+				numForced = solver.probe(edges[k]);
+				if (size + 3 * numForced > forced.length) {
+					forced = Arrays.copyOf(forced, Math.max(2 * forced.length, size + 3 * numForced));
 				}
-				if (edgeChanged) {
-					unknownPos.remove();
-					applyRules();
-					boardChanged = true;
+				for (int f = 0; f < numForced; f++) {
+					forced[size++] = solver.forcedEdges[f];
+					forced[size++] = solver.forcedValues[f];
+					forced[size++] = solver.probeTag;
 				}
 			}
-		} while (boardChanged);
-		/* log SAT time */
-		long stopX = System.nanoTime();
-		double sec = (double)(stopX - startX) / 1000000000.0d;
-		System.out.println(">> Solver: Finished."
-				+ "\n\t" + "-> Time: " + Double.toString(sec));
+			return Arrays.copyOf(forced, size);
+		}
 	}
 	
 	/* returns true if cell constraint are exactly satisifed */
 	private boolean checkCellConstraints() {
 		int c;
 		int countPos = 0;
-//		int countNeg = 0;
-		ArrayList<Edge> cellEdges;
-		for (Cell cell : board.getAllCells()) {
-			if (cell.hasConstraint()) {
-				c = cell.getConstraint();
+		for (int cell = 0; cell < board.getNumCells(); cell++) {
+			c = board.getConstraint(cell);
+			if (c != Board.NO_CONSTRAINT) {
 				countPos = 0;
-//				countNeg = 0;
-				cellEdges = board.getIncidentEdges(cell);
-				for (Edge edge : cellEdges) {
-					if (edge.isPositive()) {
+				for (int k = 0; k < 4; k++) {
+					if (board.isPositive(board.getCellEdge(cell, k))) {
 						countPos++;
 					}
-//					else if (edge.isNegative()) {
-//						countNeg++;
-//					}
 				}
 				if (countPos != c) {
 //					System.out.println(">> Solver: Cell Check, Fail");
@@ -261,16 +904,9 @@ public class Solver {
 	
 	/* returns true if every node has exactly 0 or 2 positive edges */
 	private boolean checkIncidentEdges() {
-		ArrayList<Edge> incEdges;
 		int count;
-		for (Node node : getAllNodes()) {
-			incEdges = getIncidentEdges(node);
-			count = 0;
-			for (Edge edge : incEdges) {
-				if (edge.isPositive()) {
-					count++;
-				}
-			}
+		for (int node = 0; node < board.getNumNodes(); node++) {
+			count = getPositiveEdges(node, nodeEdges);
 			if (!(count == 2 || count == 0)) {
 //				System.out.println(">> Solver: Node Check, Fail");
 				return false;
@@ -280,21 +916,9 @@ public class Solver {
 		return true;
 	}
 	
-	/* checks loop.size() equals the number of set edges */
+	/* checks the closed loop found by the last loop check holds every positive edge */
 	private boolean checkExcessEdges() {
-		if (loop != null) {
-			 /* loop will have one duplicate entry, its starting point */
-			int loopSize = loop.size() - 1;
-			int count = 0;
-			for (Edge edge : board.getAllEdges()) {
-				if (edge.isPositive()) {
-					count++;
-				}
-			}
-			if (count != loopSize) {
-//				System.out.println(">> Solver: Excess Edge Check, Fail");
-				return false;
-			}
+		if (loopEdge >= 0 && loopIsSimple && loopSize == numPositive) {
 //			System.out.println(">> Solver: Excess Edge Check, Pass");
 			return true;
 		}
@@ -302,54 +926,115 @@ public class Solver {
 		return false;
 	}
 	
-	/* recursively extends a path along positive edges, searching for a loop */
-	private boolean traceLoop(ArrayList<Edge> path) {
-		ArrayList<Edge> extPath;
-		if (path.size() > 3 && path.get(0).equals(path.get(path.size() - 1))) {
-			this.loop = path;
-			return true;
-		} else {
-			/* most recent edge added to path */
-			Edge leadingEdge = path.get(path.size() - 1);
-			/* incident nodes of leading edge */
-			ArrayList<Node> nodes = getIncidentNodes(leadingEdge);
-			for (Node node : nodes) {
-				/* find next node's incident edges */
-				ArrayList<Edge> nextEdges = getIncidentEdges(node.i, node.j);
-				/* for each incident edge */
-				for (Edge nextEdge : nextEdges) {
-					if (nextEdge.isPositive() && 
-							(!path.contains(nextEdge) || (path.size() > 3 && nextEdge.equals(path.get(0))))) {
-						tracedEdges.add(nextEdge);
-						extPath = new ArrayList<Edge>(50);
-						extPath.addAll(path);
-						extPath.add(nextEdge);
-						return traceLoop(extPath);
+	/* collects the positive edges incident to the node into out, returns how many */
+	private int getPositiveEdges(int node, int[] out) {
+		int count = 0;
+		int id;
+		for (int k = 0; k < 4; k++) {
+			id = board.getNodeEdge(node, k);
+			if (id >= 0 && board.isPositive(id)) {
+				out[count++] = id;
+			}
+		}
+		return count;
+	}
+	
+	/* walks the component of positive edges holding the edge, returns false if it holds no closed loop */
+	private boolean traceComponent(int start) {
+		int numEdges = 0;
+		int numNodes = 0;
+		boolean simple = true;
+		int stackSize = 0;
+		int id;
+		int node;
+		int degree;
+		edgeStamps[start] = stamp;
+		stack[stackSize++] = start;
+		while (stackSize > 0) {
+			id = stack[--stackSize];
+			numEdges++;
+			/* both end nodes of the edge */
+			for (int end = 0; end < 2; end++) {
+				node = board.getEdgeNode(id, end);
+				if (nodeStamps[node] == stamp) {
+					continue;
+				}
+				nodeStamps[node] = stamp;
+				numNodes++;
+				degree = getPositiveEdges(node, nodeEdges);
+				simple = simple && degree == 2;
+				for (int k = 0; k < degree; k++) {
+					int next = nodeEdges[k];
+					if (edgeStamps[next] != stamp) {
+						edgeStamps[next] = stamp;
+						stack[stackSize++] = next;
 					}
 				}
 			}
+		}
+		/* a connected component holds a cycle if it has as many edges as nodes */
+		if (numEdges < numNodes) {
 			return false;
 		}
-//		return false;
+		if (loopEdge < 0) {
+			loopEdge = start;
+			loopSize = numEdges;
+			loopIsSimple = simple;
+		}
+		return true;
+	}
+	
+	/* starts a loop check, every edge and node is unvisited after it */
+	private void nextStamp() {
+		int numEdges = board.getNumEdges();
+		if (stack == null || stack.length != numEdges) {
+			stack = new int[numEdges];
+			edgeStamps = new int[numEdges];
+			nodeStamps = new int[board.getNumNodes()];
+			stamp = 0;
+		}
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(edgeStamps, 0);
+			Arrays.fill(nodeStamps, 0);
+			stamp = 1;
+		}
 	}
 	
-	/* checks that a loop, any loop exist on the game board */
+	/**
+	 * checks that a loop, any loop exist on the game board, visiting each
+	 * positive edge once
+	 */
 	private boolean checkLoopExist() {
-		tracedEdges.clear();
-		ArrayList<Edge> path;
-		for (Edge edge : this.board.getAllEdges()) {
-			if (edge.isPositive() && !tracedEdges.contains(edge)) {
-				tracedEdges.add(edge);
-				path = new ArrayList<Edge>(50);
-				path.add(edge);
-				if (traceLoop(path)) {
-//					System.out.println(">> Solver: Loop Check, Pass");
-					return true;
+		nextStamp();
+		loopEdge = -1;
+		numPositive = 0;
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (board.isPositive(id)) {
+				numPositive++;
+				if (edgeStamps[id] != stamp) {
+					traceComponent(id);
 				}
 			}
 		}
-//		System.out.println(">> Solver: Loop Check, Fail");
-		return false;
+//		System.out.println(">> Solver: Loop Check, " + (loopEdge >= 0 ? "Pass" : "Fail"));
+		return loopEdge >= 0;
+	}
+	
+	/**
+	 * checks the components of the edges set positive since the last check,
+	 * a loop closed since then runs through one of them
+	 */
+	private boolean checkNewLoops() {
+		nextStamp();
+		loopEdge = -1;
+		for (int k = 0; k < numNewPositive && loopEdge < 0; k++) {
+			int id = newPositive[k];
+			if (board.isPositive(id) && edgeStamps[id] != stamp) {
+				traceComponent(id);
+			}
+		}
+		numNewPositive = 0;
+		return loopEdge >= 0;
 	}
 	
 	/** 
@@ -368,525 +1053,386 @@ public class Solver {
 	 * edge is already set to that value, and throws an exception
 	 * if the edge is known to be the opposite value
 	 */
-	private boolean assertEdge(Edge edge, int value, String tag) throws ConsistencyException {
+	private boolean assertEdge(int id, int value, String tag) throws ConsistencyException {
 		boolean changed = false;
-		if (!edge.isKnown()) {
-			edge.setValue(value);
-			if (value == Edge.POSITIVE) {
-				System.out.println(">> Solver: Move: " + edge.toString() + "Positive");
-			} else {
-				System.out.println(">> Solver: Move: " + edge.toString() + "Negative");
+		if (!board.isKnown(id)) {
+			board.setEdgeValue(id, value);
+			enqueueEdge(id);
+			numDeductions++;
+			statistics.addDeduction(activeRule);
+			if (listener != DeductionListener.NONE) {
+				listener.deduced(new Edge(board, id), value, tag);
 			}
 			changed = true;
-		} else if (edge.isKnown() && edge.getValue() != value) {
-			throw new ConsistencyException(
-					">> Solver: ConsistencyException @ " + edge.toString()
-							+ "\n\t" + "-> rule tag: " + tag
-							+ "\n\t" + "-> attemped: " + Integer.toString(value));
+		} else if (board.getEdgeValue(id) != value) {
+			throw contradiction.signal(board, ConsistencyException.EDGE, id, tag, value);
 		}
 		return changed;
 	}
 	
 	/**
 	 * applies ruleset to this Solver's board
-	 * 
+	 *
 	 * @return true if there are no consistency exceptions
 	 */
 	public boolean applyRules() {
-		try {
-			ArrayList<Cell> cells = this.board.getAllCells();
-			ArrayList<Node> nodes = getAllNodes();
-			boolean boardChanged;
-			int c;
-			do {
-				boardChanged = false;
-				/* for each cell */
-				for (Cell cell : cells) {
-					boardChanged = boardChanged || rule_incidentEdges(cell);
-					if (cell.hasConstraint()) {
-						c = cell.getConstraint();
-						if (c > 0) {
-							boardChanged = boardChanged || rule_corners(cell);
-							if (c == 3) {
-								boardChanged = boardChanged || rule_adjacentThrees(cell);
-								boardChanged = boardChanged || rule_diagonalThrees(cell);
-								boardChanged = boardChanged || rule_lineToThree(cell);
-							} else if (c == 2) {
-								boardChanged = boardChanged || rule_blockedTwo(cell);
-								boardChanged = boardChanged || rule_lineToTwo(cell);
-								boardChanged = boardChanged || rule_incidentEdges(cell);
-							} else if (c == 1) {
-								boardChanged = boardChanged || rule_ones(cell);
-							}
-						} else {
-							boardChanged = boardChanged || rule_zero(cell);
-						}
-					}
-				}
-				/* for each node */
-				for (Node node : nodes) {
-					boardChanged = boardChanged || rule_incidentEdges(node);
-				}
-				rule_falseLoop();
-			} while (boardChanged);
-		} catch (ConsistencyException ce) {
-			/* handle exception */
-//			System.out.println(ce.toString());
-			return false;
+		initQueue();
+		/* every cell and node is evaluated once, after that only neighbours of changed edges */
+		for (int item = 0; item < queue.length; item++) {
+			enqueue(item);
 		}
-		return true;
+		/* loops may have been closed before the rules saw the board */
+		checkAllLoops = true;
+		return propagate();
 	}
 	
-	/***********************************************************************************************************************
-	 ***************************************************** RULES BELOW *****************************************************
-	 ***********************************************************************************************************************/
-	
-	private void rule_falseLoop() throws ConsistencyException {
-		if (checkLoopExist() && !checkExcessEdges()) {
-			throw new ConsistencyException(">> Solver: ConsistencyException"
-					+ "\n\t" + "-> rule tag: FL");
+	/* allocates the propagation queue for this Solver's board */
+	private void initQueue() {
+		int numItems = board.getNumRows() * board.getNumCols() + (board.getNumRows() + 1) * (board.getNumCols() + 1);
+		if (queue == null || queue.length != numItems) {
+			queue = new int[numItems];
+			queued = new boolean[numItems];
+			queueHead = 0;
+			queueSize = 0;
+			newPositive = new int[board.getNumEdges()];
+			numNewPositive = 0;
+		}
+		if (excludedLoops == null) {
+			findExcludedLoops();
 		}
 	}
 	
-	private boolean rule_ones(Cell cell) throws ConsistencyException {
-		final String RULETAG = "1";
-		ArrayList<Edge> edges = new ArrayList<Edge>(2);
-		int m = cell.getRow();
-		int n = cell.getCol();
-		boolean changed = false;
-		/* cell against left board edge, but not in corner */
-		if ((m > 0 && m < board.getNumRows() - 1) && n == 0) {
-			/* check vertical edge above cell and against board edge */
-			if (board.getEdge(m-1, n, Edge.VERTICAL).isPositive()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".lbe.0");
-				}
-				edges.clear();
-			}
-			if (board.getEdge(m-1, n, Edge.VERTICAL).isNegative()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".lbe.1");
-				}
-				edges.clear();
-			}
-			/* check vertical edge below cell and against board edge */
-			if (board.getEdge(m+1, n, Edge.VERTICAL).isPositive()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".lbe.2");
-				}
-				edges.clear();
-			}
-			if (board.getEdge(m+1, n, Edge.VERTICAL).isNegative()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".lbe.3");
-				}
-				edges.clear();
-			}
-		/* cell against top board edge, but not in corner */
-		} else if ((n > 0 && n < board.getNumCols() - 1) && m == 0) {
-			/* check horizontal edge left of cell and against board edge */
-			if (board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tbe.0");
-				}
-				edges.clear();
-			}
-			if (board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tbe.1");
-				}
-				edges.clear();
-			}
-			/* check horizontal edge right of cell and against board edge */
-			if (board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tbe.2");
-				}
-				edges.clear();
+	/* fills excludedLoops for every pair of adjacent threes, the only pairs rule_adjacentThrees asks for */
+	private void findExcludedLoops() {
+		int numRows = board.getNumRows();
+		int numCols = board.getNumCols();
+		int numPositive = 0;
+		for (int cell = 0; cell < numRows * numCols; cell++) {
+			if (board.getConstraint(cell) > 0) {
+				numPositive++;
 			}
-			if (board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tbe.3");
+		}
+		excludedLoops = new boolean[2 * numRows * numCols];
+		for (int m = 0; m < numRows; m++) {
+			for (int n = 0; n < numCols; n++) {
+				if (board.getConstraint(m, n) != 3) {
+					continue;
 				}
-				edges.clear();
-			}
-		/* cell against right board edge, but not in corner */
-		} else if ((m > 0 && m < board.getNumRows() - 1) && n == board.getNumCols() - 1) {
-			/* check vertical edge above cell and against board edge */
-			if (board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".rbe.0");
+				int cell = m * numCols + n;
+				if (n < numCols - 1 && board.getConstraint(m, n+1) == 3) {
+					excludedLoops[2 * cell] = excludesLoopAround(m, n, m, n+1, numPositive);
 				}
-				edges.clear();
-			}
-			if (board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".rbe.1");
+				if (m < numRows - 1 && board.getConstraint(m+1, n) == 3) {
+					excludedLoops[2 * cell + 1] = excludesLoopAround(m, n, m+1, n, numPositive);
 				}
-				edges.clear();
 			}
-			/* check vertical edge below cell and against board edge */
-			if (board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".rbe.2");
+		}
+	}
+	
+	/**
+	 * @return true if some clue is not met by the loop around the two
+	 * 		adjacent cells, so it is not a solution and the edge between them
+	 * 		is positive in every solution if both are threes
+	 */
+	private boolean excludesLoopAround(int m, int n, int sM, int sN, int numPositive) {
+		/* the loop has 3 edges on each of the two cells, 1 on the cells next to them and none anywhere else */
+		int numMet = 0;
+		for (int i = Math.max(Math.min(m, sM) - 1, 0); i <= Math.min(Math.max(m, sM) + 1, board.getNumRows() - 1); i++) {
+			for (int j = Math.max(Math.min(n, sN) - 1, 0); j <= Math.min(Math.max(n, sN) + 1, board.getNumCols() - 1); j++) {
+				int c = board.getConstraint(i, j);
+				if (c == Board.NO_CONSTRAINT) {
+					continue;
 				}
-				edges.clear();
-			}
-			if (board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".rbe.3");
+				int count = 0;
+				if ((i == m && j == n) || (i == sM && j == sN)) {
+					count = 3;
+				} else if (Math.abs(i - m) + Math.abs(j - n) == 1 || Math.abs(i - sM) + Math.abs(j - sN) == 1) {
+					count = 1;
 				}
-				edges.clear();
-			}
-		/* cell against bottom board edge, but not in corner */
-		} else if ((n > 0 && n < board.getNumCols() - 1) && m == board.getNumRows() - 1) {
-			/* check horizontal edge left of cell and against board edge */
-			if (board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bbe.0");
+				if (c != count) {
+					return true;
 				}
-				edges.clear();
-			}
-			if (board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bbe.1");
+				if (c > 0) {
+					numMet++;
 				}
-				edges.clear();
 			}
-			/* check horizontal edge right of cell and against board edge */
-			if (board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive()) {
-				edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bbe.0");
+		}
+		/* a positive clue further away */
+		return numMet < numPositive;
+	}
+	
+	/**
+	 * applies ruleset to the queued cells and nodes until the queue is empty,
+	 * every edge changed along the way queues its neighbourhood. the loop
+	 * check then follows the edges set positive, so a propagate costs as
+	 * much as the deductions it makes and the paths they extend
+	 *
+	 * @return true if there are no consistency exceptions
+	 */
+	private boolean propagate() {
+		int numCols = board.getNumCols();
+		int numCells = board.getNumRows() * numCols;
+		int item;
+		loopEdge = -1;
+		try {
+			while (queueSize > 0 || checkAllLoops || numNewPositive > 0) {
+				if (queueSize == 0) {
+					/* the loop check runs at the fixpoint, a closed loop sets every other edge negative and queues their cells */
+					runRule(RULE_FALSE_LOOP, 0, 0);
+					continue;
 				}
-				edges.clear();
-			}
-			if (board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()) {
-				edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-				edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				for (Edge edge : edges) {
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bbe.1");
+				item = queue[queueHead];
+				queueHead = (queueHead + 1) % queue.length;
+				queueSize--;
+				queued[item] = false;
+				if (item < numCells) {
+					/* a rule may stop after its first deduction, so evaluate the cell again */
+					if (applyCellRules(item / numCols, item % numCols)) {
+						enqueue(item);
+					}
+				} else {
+					item -= numCells;
+					runRule(RULE_INCIDENT_EDGES_NODE, item / (numCols + 1), item % (numCols + 1));
 				}
-				edges.clear();
 			}
+		} catch (ConsistencyException ce) {
+			/* handle exception */
+			statistics.addContradiction(activeRule);
+//			System.out.println(ce.toString());
+			clearQueue();
+			return false;
 		}
-		/* line and 'x' at top-left corner of cell */
-		if ((m > 0 && n > 0) && 
-				((board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n, Edge.VERTICAL).isNegative()) ||
-				(board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative() && board.getEdge(m-1, n, Edge.VERTICAL).isPositive()))) {
-			edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tlc.lx");
-			}
-			edges.clear();
-		}
-		/* line and 'x' at top-right corner */
-		if ((m > 0 && n < board.getNumCols() - 1) && 
-				((board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()) ||
-					(board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative() && board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive()))) {
-			edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".trc.lx");
-			}
-			edges.clear();
-		}
-		/* line and 'x' at bottom-left corner */
-		if ((m < board.getNumRows() - 1 && n > 0) && 
-				((board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n, Edge.VERTICAL).isNegative()) ||
-				(board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n, Edge.VERTICAL).isPositive()))) {
-			edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".blc.lx");
-			}
-			edges.clear();
-		}
-		/* line and 'x' at bottom-right corner */
-		if ((m < board.getNumRows() - 1 && n < board.getNumCols() - 1) && 
-				((board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative()) ||
-				(board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive()))) {
-			edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".blc.lx");
+		return true;
+	}
+	
+	/* applies every rule of the cell, returns true if the board changed */
+	private boolean applyCellRules(int m, int n) throws ConsistencyException {
+		boolean changed = runRule(RULE_INCIDENT_EDGES_CELL, m, n);
+		int c = board.getConstraint(m, n);
+		if (c > 0) {
+			changed = runRule(RULE_PATTERN, m, n) || changed;
+			/* the pattern table sees one cell, these see the three next to it */
+			if (c == 3) {
+				changed = runRule(RULE_ADJACENT_THREES, m, n) || changed;
+				changed = runRule(RULE_DIAGONAL_THREES, m, n) || changed;
 			}
-			edges.clear();
+		} else if (c == 0) {
+			changed = runRule(RULE_ZERO, m, n) || changed;
 		}
 		return changed;
 	}
 	
-	private boolean rule_blockedTwo(Cell cell) throws ConsistencyException {
-		final String RULETAG = "B2";
-//		ArrayList<Edge> edges = new ArrayList<Edge>(2);
-		Edge edge;
-		int m = cell.getRow();
-		int n = cell.getCol();
-		int numRows = board.getNumRows();
-		int numCols = board.getNumCols();
-		boolean changed = false;
-		/* check for negative edges to the left */
-		if ((n == 0 || (board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative()))
-				&& (m > 0 && m < numRows - 1)) {
-			if (board.getEdge(m-1, n, Edge.VERTICAL).isNegative()) {
-				edge = board.getEdge(m+1, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.l.0");
-			}
-			if (board.getEdge(m+1, n, Edge.VERTICAL).isNegative()) {
-				edge = board.getEdge(m-1, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.l.1");
-			}
+	/**
+	 * whether applyCellRules evaluates the rule for a cell with constraint c,
+	 * Board.NO_CONSTRAINT if it has none, node and board rules apply
+	 * everywhere
+	 */
+	static boolean ruleApplies(int rule, int c) {
+		switch (rule) {
+		case RULE_ZERO:
+			return c == 0;
+		case RULE_PATTERN:
+			return c > 0;
+		case RULE_ADJACENT_THREES:
+		case RULE_DIAGONAL_THREES:
+			return c == 3;
+		default:
+			return true;
 		}
-		/* check for negative edges to the right */
-		if ((n == numCols - 1 || (board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()))
-				&& (m > 0 && m < numRows - 1)) {
-			if (board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()) {
-				edge = board.getEdge(m+1, n+1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.r.0");
-			}
-			if (board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative()) {
-				edge = board.getEdge(m-1, n+1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.r.1");
+	}
+	
+	/**
+	 * applies a single rule to the cell at position, to the node at position
+	 * for RULE_INCIDENT_EDGES_NODE and to the whole board for RULE_FALSE_LOOP,
+	 * changed edges are not propagated
+	 *
+	 * @return true if the board changed
+	 */
+	boolean applyRule(int rule, int m, int n) throws ConsistencyException {
+		initQueue();
+		checkAllLoops = true;
+		try {
+			if (rule != RULE_FALSE_LOOP && rule != RULE_INCIDENT_EDGES_NODE
+					&& !ruleApplies(rule, board.getConstraint(m, n))) {
+				return false;
 			}
+			return runRule(rule, m, n);
+		} finally {
+			clearQueue();
 		}
-		/* check for negative edges above */
-		if ((m == 0 || (board.getEdge(m-1, n, Edge.VERTICAL).isNegative() &&  board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()))
-				&& (n > 0 && n < numCols - 1)) {
-			if (board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative()) {
-				edge = board.getEdge(m, n+1, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.u.0");
-			}
-			if (board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative()) {
-				edge = board.getEdge(m, n-1, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.u.0");
+	}
+	
+	/* applies one rule to the cell or node at position and charges it to the rule's family */
+	private boolean runRule(int rule, int m, int n) throws ConsistencyException {
+		boolean changed;
+		activeRule = rule;
+		if (timing) {
+			long startX = System.nanoTime();
+			try {
+				changed = dispatchRule(rule, m, n);
+			} finally {
+				statistics.addNanos(rule, System.nanoTime() - startX);
 			}
+		} else {
+			changed = dispatchRule(rule, m, n);
 		}
-		/* check for negative edges below*/
-		if ((m == numRows - 1 || (board.getEdge(m+1, n, Edge.VERTICAL).isNegative() && board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative()))
-				&& (n > 0 && n < numCols - 1)) {
-			if (board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative()) {
-				edge = board.getEdge(m+1, n+1, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.d.0");
-			}
-			if (board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()) {
-				edge = board.getEdge(m+1, n-1, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".pb.d.1");
+		statistics.addCall(rule, changed);
+		return changed;
+	}
+	
+	private boolean dispatchRule(int rule, int m, int n) throws ConsistencyException {
+		switch (rule) {
+		case RULE_FALSE_LOOP:
+			return rule_falseLoop();
+		case RULE_INCIDENT_EDGES_CELL:
+			return rule_incidentEdges(m, n);
+		case RULE_INCIDENT_EDGES_NODE:
+			return rule_incidentEdges(m * (board.getNumCols() + 1) + n);
+		case RULE_ZERO:
+			return rule_zero(m, n);
+		case RULE_PATTERN:
+			return rule_pattern(m, n);
+		case RULE_ADJACENT_THREES:
+			return rule_adjacentThrees(m, n);
+		case RULE_DIAGONAL_THREES:
+			return rule_diagonalThrees(m, n);
+		default:
+			throw new IllegalArgumentException("rule " + rule);
+		}
+	}
+	
+	private void enqueue(int item) {
+		if (!queued[item]) {
+			queued[item] = true;
+			queue[(queueHead + queueSize) % queue.length] = item;
+			queueSize++;
+		}
+	}
+	
+	/* queues the nodes at both ends of the edge, and a positive edge for the loop check */
+	private void enqueueEdge(int id) {
+		enqueueNode(board.getEdgeNode(id, 0));
+		enqueueNode(board.getEdgeNode(id, 1));
+		if (board.isPositive(id)) {
+			if (numNewPositive < newPositive.length) {
+				newPositive[numNewPositive++] = id;
+			} else {
+				checkAllLoops = true;
 			}
 		}
-		return changed;
 	}
 	
-	private boolean rule_lineToTwo(Cell cell) throws ConsistencyException {
-		final String RULETAG = "L2";
-		ArrayList<Edge> edges = new ArrayList<>(2);
-		int m = cell.getRow();
-		int n = cell.getCol();
+	/* queues the node and every cell with a corner on it, the rules of those cells read the node's edges */
+	private void enqueueNode(int node) {
 		int numRows = board.getNumRows();
 		int numCols = board.getNumCols();
-		boolean changed = false;
-		boolean notInBoardCorner;
-		/* check non-incident edges at top-left */
-		notInBoardCorner = (m > 0 && n > 0);
-		if (notInBoardCorner && board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n, Edge.VERTICAL).isPositive()) {
-			edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tl.0");
-			}
-			edges.clear();
-		} else if ((notInBoardCorner && board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n, Edge.VERTICAL).isNegative())
-				|| (notInBoardCorner && board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative() && board.getEdge(m-1, n, Edge.VERTICAL).isPositive())
-				|| (m == 0 && n > 0 && board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive())
-				|| (n == 0 && m > 0 && board.getEdge(m-1, n, Edge.VERTICAL).isPositive())) {
-			/* try to determine vertical edge at bottom-right */
-			if (m < numRows - 1) {
-				if (n == numCols - 1 || board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n+1, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".tl.1");
-				} else if (board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n+1, Edge.VERTICAL), Edge.NEGATIVE, RULETAG + ".tl.2");
-				}
-			}
-			/* try to determine horizontal edge at bottom-right*/
-			if (n < numCols - 1) {
-				if (m == numRows - 1 || board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n+1, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".tl.3");
-				} else if (board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n+1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG + ".tl.4");
+		int i = node / (numCols + 1);
+		int j = node % (numCols + 1);
+		enqueue(numRows * numCols + node);
+		for (int m = i - 1; m <= i; m++) {
+			for (int n = j - 1; n <= j; n++) {
+				if (m >= 0 && m < numRows && n >= 0 && n < numCols) {
+					enqueue(m * numCols + n);
 				}
 			}
 		}
-		/* check non-incident edges at top-right */
-		notInBoardCorner = (m > 0 && n < numCols - 1);
-		if (notInBoardCorner && board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive()) {
-			edges.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tr.0");
-			}
-			edges.clear();
-		}  else if ((notInBoardCorner && board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative())
-				|| (notInBoardCorner && board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative() && board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive())
-				|| (m == 0 && n < numCols - 1 && board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive())
-				|| (n == numCols - 1 && m > 0 && board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive())) {
-			/* try to determine vertical edge at bottom-left of cell */
-			if (m < numRows - 1) {
-				if (n == 0 || board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".tr.1");
-				} else if (board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n, Edge.VERTICAL), Edge.NEGATIVE, RULETAG + ".tr.2");
-				}
-			}
-			/* try to determine horizontal edge at bottom-left of cell */
-			if (n > 0) {
-				if (m == numRows - 1 || board.getEdge(m+1, n, Edge.VERTICAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n-1, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".tr.3");
-				} else if (board.getEdge(m+1, n, Edge.VERTICAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m+1, n-1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG + ".tr.4");
-				}
-			}
+	}
+	
+	private void clearQueue() {
+		while (queueSize > 0) {
+			queued[queue[queueHead]] = false;
+			queueHead = (queueHead + 1) % queue.length;
+			queueSize--;
 		}
-		/* check non-incident edges at bottom-left */
-		notInBoardCorner = (m < numRows - 1 && n > 0);
-		if (notInBoardCorner && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n, Edge.VERTICAL).isPositive()) {
-			edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".bl.0");
-			}
-			edges.clear();
-		} else if ((notInBoardCorner && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n, Edge.VERTICAL).isNegative())
-				|| (notInBoardCorner && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n, Edge.VERTICAL).isPositive())
-				|| (m == numRows - 1 && n > 0 && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive())
-				|| (m < numRows - 1 && n == 0 && board.getEdge(m+1, n, Edge.VERTICAL).isPositive())) {
-			/* try to determine vertical edge at top-right of cell */
-			if (m > 0) {
-				if (n == numCols - 1 || board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m-1, n+1, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".bl.1");
-				} else if (board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m-1, n+1, Edge.VERTICAL), Edge.NEGATIVE, RULETAG + ".bl.2");
-				}
-			}
-			/* try to determine horizontal edge at top-right of cell */
-			if (n < numCols - 1) {
-				if (m == 0 || board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m, n+1, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".bl.3");
-				} else if (board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m, n+1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG + ".bl.4");
-				}
-			}
+		numNewPositive = 0;
+		checkAllLoops = false;
+	}
+	
+	/***********************************************************************************************************************
+	 ***************************************************** RULES BELOW *****************************************************
+	 ***********************************************************************************************************************/
+	
+	/**
+	 * a closed loop must hold every positive edge, and every other edge is
+	 * negative. only the components of the edges set positive since the
+	 * last check are walked, unless the whole board has to be checked
+	 */
+	private boolean rule_falseLoop() throws ConsistencyException {
+		final String RULETAG = "FL";
+		boolean closed;
+		if (checkAllLoops) {
+			checkAllLoops = false;
+			numNewPositive = 0;
+			closed = checkLoopExist();
+		} else {
+			closed = checkNewLoops();
 		}
-		/* check non-incident edges at bottom-right */
-		notInBoardCorner = (m < numRows - 1 && n < numCols - 1);
-		if (notInBoardCorner && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive()) {
-			edges.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edges.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edge : edges) {
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".br.0");
-			}
-			edges.clear();
+		if (!closed) {
+			return false;
 		}
-		else if ((notInBoardCorner && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive() && board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative())
-				|| (notInBoardCorner && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative() && board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive())
-				|| (m == numRows - 1 && n < numCols - 1 && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive())
-				|| (m < numRows - 1 && n == numCols - 1 && board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive())) {
-			/* try to determine vertical edge at top-right of cell */
-			if (m > 0) {
-				if (n == 0 || board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m-1, n, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".br.1");
-				} else if (board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m-1, n, Edge.VERTICAL), Edge.NEGATIVE, RULETAG + ".br.2");
-				}
+		int count = 0;
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (board.isPositive(id)) {
+				count++;
 			}
-			/* try to determine horizontal edge at top-right of cell */
-			if (n > 0) {
-				if (m == 0 || board.getEdge(m-1, n, Edge.VERTICAL).isNegative()) {
-					changed = changed || assertEdge(board.getEdge(m, n-1, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".br.3");
-				} else if (board.getEdge(m-1, n, Edge.VERTICAL).isPositive()) {
-					changed = changed || assertEdge(board.getEdge(m, n-1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG + ".br.4");
-				}
+		}
+		if (!loopIsSimple || loopSize != count) {
+			throw contradiction.signal(board, ConsistencyException.BOARD, 0, RULETAG, 0);
+		}
+		boolean changed = false;
+		for (int id = 0; id < board.getNumEdges(); id++) {
+			if (!board.isKnown(id)) {
+				changed = assertEdge(id, Edge.NEGATIVE, RULETAG) || changed;
 			}
 		}
 		return changed;
 	}
 	
-	private boolean rule_incidentEdges(Cell cell) throws ConsistencyException {
+	private boolean rule_incidentEdges(int m, int n) throws ConsistencyException {
 		final String RULETAG = "IE.S";
 		boolean changed = false;
-		ArrayList<Edge> edges = board.getIncidentEdges(cell);
-		int c;
+		int cell = m * board.getNumCols() + n;
+		int c = board.getConstraint(m, n);
+		int id;
 		/* the number of known set edges */
 		int numKnownPos = 0;
 		/* the number of known un-set edges */
 		int numKnownNeg = 0;
-		for (Edge edge : edges) {
-			if (edge.isPositive()) {
+		for (int k = 0; k < 4; k++) {
+			id = board.getCellEdge(cell, k);
+			if (board.isPositive(id)) {
 				numKnownPos++;
-			} else if (edge.isNegative()) {
+			} else if (board.isKnown(id)) {
 				numKnownNeg++;
 			}
 		}
-		/* consistency checks */
-		if (numKnownPos == 4) {
-			throw new ConsistencyException(">> Solver: ConsistencyException @ " + cell.toString()
-					+ "\n\t" + "-> rule tag: " + RULETAG + ".0");
-		}
-		if (cell.hasConstraint()) {
-			c = cell.getConstraint();
+		/* consistency checks, four positive edges around a cell without a constraint are left to the false loop rule, they are a solution if they are the only ones */
+		if (c != Board.NO_CONSTRAINT) {
 			if (numKnownPos > c) {
-				throw new ConsistencyException(">> Solver: ConsistencyException @ " + cell.toString()
-						+ "\n\t" + "-> rule tag: " + RULETAG + ".1");
+				throw contradiction.signal(board, ConsistencyException.CELL, cell, RULETAG + ".1", 0);
 			}
 			if (numKnownNeg > 4 - c) {
-				throw new ConsistencyException(">> Solver: ConsistencyException @ " + cell.toString()
-						+ "\n\t" + "-> rule tag: " + RULETAG + ".2");
+				throw contradiction.signal(board, ConsistencyException.CELL, cell, RULETAG + ".2", 0);
 			}
 			/* if there are unknown sides */
-			if (numKnownPos + numKnownNeg != edges.size()) {
+			if (numKnownPos + numKnownNeg != 4) {
 				/* if the number of set edges equals the squares constraints */
 				if (numKnownPos == c) {
-					for (Edge edge : edges) {
-						if (!edge.isKnown()) {
-							assertEdge(edge, Edge.NEGATIVE, RULETAG);
+					for (int k = 0; k < 4; k++) {
+						id = board.getCellEdge(cell, k);
+						if (!board.isKnown(id)) {
+							assertEdge(id, Edge.NEGATIVE, RULETAG);
 							changed = true;
 						}
 					}
 				/* if the number of unset edges equals four minus the constraint */
 				} else if (numKnownNeg == 4 - c) {
-					for (Edge edge : edges) {
-						if (!edge.isKnown()) {
-							assertEdge(edge, Edge.POSITIVE, RULETAG);
+					for (int k = 0; k < 4; k++) {
+						id = board.getCellEdge(cell, k);
+						if (!board.isKnown(id)) {
+							assertEdge(id, Edge.POSITIVE, RULETAG);
 							changed = true;
-						}	
+						}
 					}
 				}
 			}
@@ -894,411 +1440,170 @@ public class Solver {
 		return changed;
 	}
 	
-	private boolean rule_incidentEdges(Node node) throws ConsistencyException {
+	/* applies the incident edge rules to the node with the passed id */
+	private boolean rule_incidentEdges(int node) throws ConsistencyException {
 		final String RULETAG = "IE.N";
 		boolean changed = false;
-		ArrayList<Edge> edges = getIncidentEdges(node);
+		int id;
 		/* the number of edges surrounding the node */
-		int numTotal = edges.size();
+		int numTotal = 0;
 		/* the number of known set edges */
 		int numKnownPos = 0;
 		/* the number of known un-set edges */
 		int numKnownNeg = 0;
-		for (Edge edge : edges) {
-			if (edge.isPositive()) {
+		for (int k = 0; k < 4; k++) {
+			id = board.getNodeEdge(node, k);
+			if (id < 0) {
+				continue;
+			}
+			numTotal++;
+			if (board.isPositive(id)) {
 				numKnownPos++;
-			} else if (edge.isNegative()) {
+			} else if (board.isKnown(id)) {
 				numKnownNeg++;
 			}
 		}
 		/* consistency checks */
 		if (numKnownPos == 1 && numKnownPos + numKnownNeg == numTotal) {
-			throw new ConsistencyException(">> Solver: ConsistencyException @ " + node.toString()
-					+ "\n\t" + "-> rule tag: " + RULETAG + ".0");
+			throw contradiction.signal(board, ConsistencyException.NODE, node, RULETAG + ".0", 0);
 		}
 		/* if there's ever more than two positive edges */
 		if (numKnownPos > 2) {
-			throw new ConsistencyException(">> Solver: ConsistencyException @ " + node.toString()
-					+ "\n\t" + "-> rule tag: " + RULETAG + ".1");
+			throw contradiction.signal(board, ConsistencyException.NODE, node, RULETAG + ".1", 0);
 		}
 		/* if only one edge is unknown */
-		if (numKnownNeg + numKnownPos == edges.size() - 1) {
+		if (numKnownNeg + numKnownPos == numTotal - 1) {
 			/* if all known edges are negative, un-set the remaining edge */
-			if (numKnownNeg == edges.size() - 1) {
-				for (Edge edge : edges) {
-					if (!edge.isKnown()) {
-						assertEdge(edge, Edge.NEGATIVE, RULETAG);
-						changed = true;
-					}
-				}
+			if (numKnownNeg == numTotal - 1) {
+				changed = assertUnknownNodeEdges(node, Edge.NEGATIVE, RULETAG) || changed;
 			/* if one edge is positive, and the rest are negative, set the remaining edge */
-			} else if (numKnownPos == 1 && numKnownNeg == edges.size() - 2) {
-				for (Edge edge : edges) {
-					if (!edge.isKnown()) {
-						edge.setPositive();
-						assertEdge(edge, Edge.POSITIVE, RULETAG);
-						changed = true;
-					}
-				}
+			} else if (numKnownPos == 1 && numKnownNeg == numTotal - 2) {
+				changed = assertUnknownNodeEdges(node, Edge.POSITIVE, RULETAG) || changed;
 			}
 		}
 		/* if two edges are known-positive, un-set the remaining edges  */
 		if (numKnownPos == 2) {
-			for (Edge edge : edges) {
-				if (!edge.isKnown()) {
-					edge.setNegative();
-					assertEdge(edge, Edge.NEGATIVE, RULETAG);
-					changed = true;
-				}
-			}
+			changed = assertUnknownNodeEdges(node, Edge.NEGATIVE, RULETAG) || changed;
 		}
 		/* if there are four incident edges, two are known-negative, and one is known-positive, set the remaining edge */
-		if (edges.size() == 4 && numKnownNeg == 2 && numKnownPos == 1) {
-			for (Edge edge : edges) {
-				if (!edge.isKnown()) {
-					assertEdge(edge, Edge.POSITIVE, RULETAG);
-					changed = true;
-				}
+		if (numTotal == 4 && numKnownNeg == 2 && numKnownPos == 1) {
+			changed = assertUnknownNodeEdges(node, Edge.POSITIVE, RULETAG) || changed;
+		}
+		return changed;
+	}
+	
+	/* sets every unknown edge of the node to value, returns true if there was one */
+	private boolean assertUnknownNodeEdges(int node, int value, String tag) throws ConsistencyException {
+		boolean changed = false;
+		int id;
+		for (int k = 0; k < 4; k++) {
+			id = board.getNodeEdge(node, k);
+			if (id >= 0 && !board.isKnown(id)) {
+				assertEdge(id, value, tag);
+				changed = true;
 			}
 		}
 		return changed;
 	}
 	
-	private boolean rule_zero(Cell cell) throws ConsistencyException {
-		final String RULETAG = "Z";
+	private boolean rule_zero(int m, int n) throws ConsistencyException {
 		/* changed represents whether this rule has changed the board */
 		boolean changed = false;
+		int cell = m * board.getNumCols() + n;
 		/* assert each surrounding edge as negative */
-		ArrayList<Edge> edges = board.getIncidentEdges(cell);
-		for (Edge edge : edges) {
-			assertEdge(edge, Edge.NEGATIVE, RULETAG + "." + Integer.toString(edges.indexOf(edge)));
+		for (int k = 0; k < 4; k++) {
+			changed = assertEdge(board.getCellEdge(cell, k), Edge.NEGATIVE, ZERO_TAGS[k]) || changed;
 		}
 		return changed;
 	}
 	
+	/* applies the deductions of the pattern table to the neighbourhood of the cell */
+	private boolean rule_pattern(int m, int n) throws ConsistencyException {
+		int cell = m * board.getNumCols() + n;
+		int c = board.getConstraint(cell);
+		PatternTable.window(board, cell, window);
+		int entry = PatternTable.lookup(c, PatternTable.key(board, window));
+		if (PatternTable.isContradiction(entry)) {
+			throw contradiction.signal(board, ConsistencyException.CELL, cell, PATTERN_TAGS[c], 0);
+		}
+		int positive = PatternTable.getPositive(entry);
+		int negative = PatternTable.getNegative(entry);
+		for (int k = 0; k < PatternTable.NUM_EDGES; k++) {
+			if ((positive & (1 << k)) != 0) {
+				assertEdge(window[k], Edge.POSITIVE, PATTERN_TAGS[c]);
+			} else if ((negative & (1 << k)) != 0) {
+				assertEdge(window[k], Edge.NEGATIVE, PATTERN_TAGS[c]);
+			}
+		}
+		return (positive | negative) != 0;
+	}
+
 	/* checks for adjacent cells with a constraint of 3 */
-	private boolean rule_adjacentThrees(Cell cell) throws ConsistencyException{
+	private boolean rule_adjacentThrees(int m, int n) throws ConsistencyException {
 		final String RULETAG = "A3";
-		Cell s;
-		Edge edge;
-		int m = cell.getRow();
-		int n = cell.getCol();
-		int numRows = board.getNumRows();
-		int numCols = board.getNumCols();
+		int cell = m * board.getNumCols() + n;
 		boolean changed = false;
-		/* if possible, check to the right */
-		if (numCols > 2 && n < board.getNumCols() - 1) {
-			s = board.getCell(m, n+1);
-			/* if the cell to the right has a constraint of 3 */
-			if (s.hasConstraint() && s.getConstraint() == 3) {
-				/* set edges */
-				edge = board.getEdge(m, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				edge = board.getEdge(m, n+1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				edge = board.getEdge(m, n+2, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				/* reset edges */
-				if (m > 0) {
-					edge = board.getEdge(m-1, n+1, Edge.VERTICAL);
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG);
-				}
-				if (m < board.getNumRows() - 1) {
-					edge = board.getEdge(m+1, n+1, Edge.VERTICAL);
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG);
-				}
+		/* if possible, check to the right, unless the loop around both threes may be the whole solution */
+		if (n < board.getNumCols() - 1 && board.getConstraint(m, n+1) == 3 && excludedLoops[2 * cell]) {
+			/* set edges */
+			changed = assertEdge(board.getEdgeId(m, n, Edge.VERTICAL), Edge.POSITIVE, RULETAG) || changed;
+			changed = assertEdge(board.getEdgeId(m, n+1, Edge.VERTICAL), Edge.POSITIVE, RULETAG) || changed;
+			changed = assertEdge(board.getEdgeId(m, n+2, Edge.VERTICAL), Edge.POSITIVE, RULETAG) || changed;
+			/* reset edges */
+			if (m > 0) {
+				changed = assertEdge(board.getEdgeId(m-1, n+1, Edge.VERTICAL), Edge.NEGATIVE, RULETAG) || changed;
+			}
+			if (m < board.getNumRows() - 1) {
+				changed = assertEdge(board.getEdgeId(m+1, n+1, Edge.VERTICAL), Edge.NEGATIVE, RULETAG) || changed;
 			}
 		}
 		/* if possible, check below */
-		if (numRows > 2 && m < board.getNumRows() - 1) {
-			s = board.getCell(m+1, n);
-			if (s.hasConstraint() && s.getConstraint() == 3) {
-				/* set edges */
-				edge = board.getEdge(m, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				edge = board.getEdge(m+1, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				edge = board.getEdge(m+2, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG);
-				/* reset edges */
-				if (n > 0) {
-					edge = board.getEdge(m+1, n-1, Edge.HORIZONTAL);
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG);
-				}
-				if (n < board.getNumCols() - 1) {
-					edge = board.getEdge(m+1, n+1, Edge.HORIZONTAL);
-					changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG);
-				}
+		if (m < board.getNumRows() - 1 && board.getConstraint(m+1, n) == 3 && excludedLoops[2 * cell + 1]) {
+			/* set edges */
+			changed = assertEdge(board.getEdgeId(m, n, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG) || changed;
+			changed = assertEdge(board.getEdgeId(m+1, n, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG) || changed;
+			changed = assertEdge(board.getEdgeId(m+2, n, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG) || changed;
+			/* reset edges */
+			if (n > 0) {
+				changed = assertEdge(board.getEdgeId(m+1, n-1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG) || changed;
+			}
+			if (n < board.getNumCols() - 1) {
+				changed = assertEdge(board.getEdgeId(m+1, n+1, Edge.HORIZONTAL), Edge.NEGATIVE, RULETAG) || changed;
 			}
 		}
 		return changed;
 	}
 	
-	private boolean rule_diagonalThrees(Cell cell) throws ConsistencyException {
+	private boolean rule_diagonalThrees(int m, int n) throws ConsistencyException {
 		final String RULETAG = "D3";
-		int m = cell.getRow();
-		int n = cell.getCol();
-		Cell s;
 		int sM;
 		int sN;
-		ArrayList<Edge> edgesPos = new ArrayList<Edge>(4);
 		boolean changed = false;
 		/* if possible, check to the down and right */
 		if (m < board.getNumRows() - 1 && n < board.getNumCols() - 1) {
-			s = board.getCell(m+1, n+1);
-			if (s.hasConstraint() && s.getConstraint() == 3) {
-				sM = s.getRow();
-				sN = s.getCol();
+			sM = m+1;
+			sN = n+1;
+			if (board.getConstraint(sM, sN) == 3) {
 				/* set edges */
-				edgesPos.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edgesPos.add(board.getEdge(m, n, Edge.VERTICAL));
-				edgesPos.add(board.getEdge(sM+1, sN, Edge.HORIZONTAL));
-				edgesPos.add(board.getEdge(sM, sN+1, Edge.VERTICAL));
-				for (Edge edge : edgesPos) {
-					changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".r");
-				}
-				edgesPos.clear();
+				changed = assertEdge(board.getEdgeId(m, n, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".r") || changed;
+				changed = assertEdge(board.getEdgeId(m, n, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".r") || changed;
+				changed = assertEdge(board.getEdgeId(sM+1, sN, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".r") || changed;
+				changed = assertEdge(board.getEdgeId(sM, sN+1, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".r") || changed;
 			}
 		}
 		/* if possible, check down and left */
 		if (m < board.getNumRows() - 1 && n > 0) {
-			s = board.getCell(m+1, n-1);
-			if (s.hasConstraint() && s.getConstraint() == 3) {
-				sM = s.getRow();
-				sN = s.getCol();
+			sM = m+1;
+			sN = n-1;
+			if (board.getConstraint(sM, sN) == 3) {
 				/* set edges */
-				edgesPos.add(board.getEdge(m, n, Edge.HORIZONTAL));
-				edgesPos.add(board.getEdge(m, n+1, Edge.VERTICAL));
-				edgesPos.add(board.getEdge(sM+1, sN, Edge.HORIZONTAL));
-				edgesPos.add(board.getEdge(sM, sN, Edge.VERTICAL));
-				for (Edge edge : edgesPos) {
-					changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".l");
-				}
+				changed = assertEdge(board.getEdgeId(m, n, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".l") || changed;
+				changed = assertEdge(board.getEdgeId(m, n+1, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".l") || changed;
+				changed = assertEdge(board.getEdgeId(sM+1, sN, Edge.HORIZONTAL), Edge.POSITIVE, RULETAG + ".l") || changed;
+				changed = assertEdge(board.getEdgeId(sM, sN, Edge.VERTICAL), Edge.POSITIVE, RULETAG + ".l") || changed;
 			}
 		}
 		return changed;
 	}
-	
-	private boolean rule_lineToThree(Cell cell) throws ConsistencyException {
-		final String RULETAG = "L3";
-		int m = cell.getRow();
-		int n = cell.getCol();
-		ArrayList<Edge> edgesPos = new ArrayList<Edge>(2);
-		boolean changed = false;
-		/* line enters square at top-left node */
-		if ((n > 0 && board.getEdge(m, n-1, Edge.HORIZONTAL).isPositive()) ||
-				(m > 0 && board.getEdge(m-1, n, Edge.VERTICAL).isPositive())) {
-			edgesPos.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edgesPos.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edgePos : edgesPos) {
-				changed = changed || assertEdge(edgePos, Edge.POSITIVE, RULETAG + ".tl");
-			}
-			edgesPos.clear();
-		}
-		/* line enters square at top-right node */
-		if ((n < board.getNumCols() - 1 && board.getEdge(m, n+1, Edge.HORIZONTAL).isPositive()) ||
-				(m > 0 && board.getEdge(m-1, n+1, Edge.VERTICAL).isPositive())) {
-			edgesPos.add(board.getEdge(m+1, n, Edge.HORIZONTAL));
-			edgesPos.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edgePos : edgesPos) {
-				changed = changed || assertEdge(edgePos, Edge.POSITIVE, RULETAG + ".tr");
-			}
-			edgesPos.clear();
-		}
-		/* line enter square at bottom-left node */
-		if ((n > 0 && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isPositive()) ||
-				(m < board.getNumRows() - 1 && board.getEdge(m+1, n, Edge.VERTICAL).isPositive())) {
-			edgesPos.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edgesPos.add(board.getEdge(m, n+1, Edge.VERTICAL));
-			for (Edge edgePos : edgesPos) {
-				changed = changed || assertEdge(edgePos, Edge.POSITIVE, RULETAG + ".bl");
-			}
-			edgesPos.clear();
-		}
-		/* line enters square at bottom-right node */
-		if ((n < board.getNumCols() - 1 && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isPositive()) ||
-				(m < board.getNumRows() - 1 && board.getEdge(m+1, n+1, Edge.VERTICAL).isPositive())) {
-			edgesPos.add(board.getEdge(m, n, Edge.HORIZONTAL));
-			edgesPos.add(board.getEdge(m, n, Edge.VERTICAL));
-			for (Edge edgePos : edgesPos) {
-				changed = changed || assertEdge(edgePos, Edge.POSITIVE, RULETAG + ".br");
-			}
-		}
-		return changed;
-	}
-	
-	/* checks if square is a corner, sets edges according to constraint */
-	private boolean rule_corners(Cell cell) throws ConsistencyException {
-		final String RULETAG = "C";
-		Edge edge;
-		int c = cell.getConstraint();
-		int m = cell.getRow();
-		int n = cell.getCol();
-		int numRows = board.getNumRows();
-		int numCols = board.getNumCols(); 
-		/* changed represents whether this rule has changed the board */
-		boolean changed = false;
-		boolean truCorner;
-		/* funCorner represents whether a square is in a 'functional' corner, 
-		 * meaning that at one of its nodes there are two negative edges that
-		 * are not incident to the square itself */
-		boolean funCorner;
-		/* these two corners exist at an edge of the board */
-		boolean vEdgeCorner;
-		boolean hEdgeCorner;
-		/* twoCorner represents the additional constraints a cell with constraint two requires to be a corner */
-		boolean twoCorner;
-		/* top-left corner */
-		truCorner = (m == 0 && n == 0);
-		funCorner = ((m > 0 && n > 0) && board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative()
-				&& board.getEdge(m-1, n, Edge.VERTICAL).isNegative());
-		hEdgeCorner = (m == 0 && n > 0) && board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative();
-		vEdgeCorner = (m > 0 && n == 0) && board.getEdge(m-1, n, Edge.VERTICAL).isNegative();
-		if (truCorner || funCorner || hEdgeCorner || vEdgeCorner) {			
-			/* constraint of three */
-			if (c == 3) {
-				edge = board.getEdge(m, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tl.3.0");
-				edge = board.getEdge(m, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tl.3.1");
-			/* constraint of two */
-			} else if (c == 2) {
-				twoCorner = (funCorner && board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative()
-						&& board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative())
-						|| (hEdgeCorner && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative())
-						|| (vEdgeCorner && board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative());
-				if (truCorner || twoCorner) {
-					if (n < numCols - 1) {
-						edge = board.getEdge(m, n+1, Edge.HORIZONTAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tl.2.0");
-					}
-					if (m < numCols - 1) {
-						edge = board.getEdge(m+1, n, Edge.VERTICAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tl.2.1");
-					}
-				}
-			/* constraint of one */
-			} else if (c == 1) {
-				edge = board.getEdge(m, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tl.1.0");
-				edge = board.getEdge(m, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tl.1.1");
-			}
-		}
-		/* top-right corner */
-		truCorner = (m == 0 && n == numCols - 1);
-		funCorner = (m > 0 && n < numCols - 1)
-				&& board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative()
-				&& board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative();
-		hEdgeCorner = (m == 0 && n < numCols - 1) && board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative();
-		vEdgeCorner = (m > 0 && n == numCols - 1) && board.getEdge(m-1, n+1, Edge.VERTICAL).isNegative();
-		if (!changed && (truCorner || funCorner || hEdgeCorner || vEdgeCorner)) {
-			/* constraint of three */
-			if (c == 3) {
-				edge = board.getEdge(m, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tr.c3.0");
-				edge = board.getEdge(m, n + 1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tr.c3.1");
-			/* constraint of two */
-			} else if (c == 2) {
-				twoCorner = (funCorner && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()
-						&& board.getEdge(m-1, n, Edge.VERTICAL).isNegative())
-						|| (hEdgeCorner && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative())
-						|| (vEdgeCorner && board.getEdge(m-1, n, Edge.VERTICAL).isNegative());
-				
-				if (truCorner || twoCorner) {
-					if (n > 0) {
-						edge = board.getEdge(m, n-1, Edge.HORIZONTAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tr.c2.0");
-					}
-					if (m < numRows - 1 && n < numCols - 1) {
-						edge = board.getEdge(m+1, n+1, Edge.VERTICAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".tr.c2.1");
-					}
-				}
-			/* constraint of one */
-			} else if (c == 1) {
-				edge = board.getEdge(m, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tr.c1.0");
-				edge = board.getEdge(m, n + 1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".tl.c1.1");
-			}
-		} 
-		/* bottom-left corner */
-		truCorner = (m == numRows - 1 && n == 0);
-		funCorner = (m < numRows - 1 && n > 0) && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative()
-				&& board.getEdge(m+1, n, Edge.VERTICAL).isNegative();
-		hEdgeCorner = (m == numRows - 1 && n > 0) && board.getEdge(m+1, n-1, Edge.HORIZONTAL).isNegative();
-		vEdgeCorner = (m < numRows - 1 && n == 0) && board.getEdge(m+1, n, Edge.VERTICAL).isNegative();
-		if (!changed && (truCorner || funCorner || hEdgeCorner || vEdgeCorner)) {
-			/* constraint of three */
-			if (c == 3) {
-				edge = board.getEdge(m + 1, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".bl.c3.0");
-				edge = board.getEdge(m, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".bl.c3.1");
-			/* constraint of two */
-			} else if (c == 2) {
-				twoCorner = (funCorner && board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative()
-						&& board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative())
-						|| (hEdgeCorner && board.getEdge(m, n-1, Edge.HORIZONTAL).isNegative())
-						|| (vEdgeCorner && board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative());
-				if (truCorner || twoCorner) {
-					if (m < numRows - 1 && n < numCols - 1) {
-						edge = board.getEdge(m+1, n+1, Edge.HORIZONTAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".bl.c2.0");
-					}
-					if (m > 0) {
-						edge = board.getEdge(m-1, n, Edge.VERTICAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".bl.c2.1");
-					}
-				}
-			/* constraint of one */
-			} else if (c == 1) {
-				edge = board.getEdge(m + 1, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bl.c1.0");
-				edge = board.getEdge(m, n, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".bl.c1.1");
-			}
-		}
-		/* bottom-right corner */
-		truCorner = (m == numRows -1 && n == numCols - 1);
-		funCorner = (m < numRows - 1) && (n < numCols - 1)
-				&& board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative()
-				&& board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative();
-		hEdgeCorner = (m == numRows - 1 && n < numCols - 1) && board.getEdge(m+1, n+1, Edge.HORIZONTAL).isNegative();
-		vEdgeCorner = (m < numRows - 1 && n == numCols - 1) && board.getEdge(m+1, n+1, Edge.VERTICAL).isNegative();
-		if (!changed && ((m == board.getNumRows() - 1 && n == board.getNumCols() - 1) || funCorner)) {
-			/* constraint of three */
-			if (c == 3) {
-				edge = board.getEdge(m + 1, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".br.c3.0");
-				edge = board.getEdge(m, n + 1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".br.c3.1");
-			/* constraint of two */
-			} else if (c == 2) {
-				twoCorner = (funCorner && board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative()
-						&& board.getEdge(m+1, n, Edge.VERTICAL).isNegative())
-						|| (hEdgeCorner && board.getEdge(m, n+1, Edge.HORIZONTAL).isNegative())
-						|| (vEdgeCorner && board.getEdge(m+1, n, Edge.VERTICAL).isNegative());
-				if (truCorner || twoCorner) {
-					if (n > 0) {
-						edge = board.getEdge(m+1, n-1, Edge.HORIZONTAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".br.c2.0");
-					}
-					if (m > 0) {
-						edge = board.getEdge(m-1, n+1, Edge.VERTICAL);
-						changed = changed || assertEdge(edge, Edge.POSITIVE, RULETAG + ".br.c2.1");
-					}
-				}
-			/* constraint of one */
-			} else if (c == 1) {
-				edge = board.getEdge(m + 1, n, Edge.HORIZONTAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".br.c1.0");
-				edge = board.getEdge(m, n + 1, Edge.VERTICAL);
-				changed = changed || assertEdge(edge, Edge.NEGATIVE, RULETAG + ".br.c1.1");
-			}
-		}
-		return changed;
-	}
-}
\ No newline at end of file
+
+}
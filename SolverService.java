@@ -0,0 +1,340 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * solves puzzles for other processes on the same host over HTTP. a POST
+ * to /solve holds one or more puzzles in the text format of the board
+ * files, the reply holds for each puzzle a status line, "solved",
+ * "unsolved" or "timeout", followed by the board as left by the solver.
+ * the deadline of a request is given in ms by ?deadline=, at most
+ * MAX_DEADLINE, a puzzle still waiting for a worker when it passes is
+ * skipped and the probing or search of a puzzle being solved gives up.
+ *
+ * each request is handled on a virtual thread where the runtime has them
+ * and on a thread of a cached pool otherwise. puzzles of all requests go
+ * through one queue, a dispatcher takes them in batches whenever a worker
+ * is free, so under load many small puzzles share one task. solutions
+ * are cached, a repeated puzzle is only looked up
+ *
+ * @author Kyler
+ *
+ */
+public class SolverService {
+	public static final int DEFAULT_PORT = 8462;
+	/* deadline of a request without one, in ms */
+	private static final long DEFAULT_DEADLINE = 10000;
+	/* longer deadlines are cut to this many ms */
+	private static final long MAX_DEADLINE = 600000;
+	/* a batch is closed once it holds this many cells */
+	private static final int BATCH_CELLS = 4096;
+	private static final int MAX_REQUEST_BYTES = 1 << 20;
+	private static final int MAX_REQUEST_PUZZLES = 1024;
+	private static final int CACHE_CAPACITY = 4096;
+	/* job status */
+	private static final int PENDING = 0;
+	private static final int SOLVED = 1;
+	private static final int UNSOLVED = 2;
+	private static final int EXPIRED = 3;
+	private static final String[] STATUS_NAMES = { "pending", "solved", "unsolved", "timeout" };
+	private int port;
+	private int numThreads;
+	private HttpServer server;
+	/* runs the handlers of requests */
+	private ExecutorService handlers;
+	/* runs the batches, a permit is taken for each batch running */
+	private ExecutorService workers;
+	private Semaphore idleWorkers;
+	private Thread dispatcher;
+	private LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<Job>();
+	private SolutionCache cache = new SolutionCache(CACHE_CAPACITY, null);
+	private volatile boolean running;
+	private AtomicLong numRequests = new AtomicLong();
+	private AtomicLong numBatches = new AtomicLong();
+	private AtomicLong numExpired = new AtomicLong();
+	
+	/**
+	 * one puzzle of a request
+	 *
+	 * @author Kyler
+	 */
+	private static class Job {
+		private final Board board;
+		/* System.nanoTime() after which the job is not started, and its search gives up */
+		private final long deadline;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile int status = PENDING;
+		
+		public Job(Board board, long deadline) {
+			this.board = board;
+			this.deadline = deadline;
+		}
+	}
+	
+	public SolverService(int port, int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("threads " + numThreads);
+		}
+		this.port = port;
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * binds the loopback address and starts serving, returns once the
+	 * server is listening
+	 */
+	public void start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/solve", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleSolve(exchange);
+			}
+		});
+		handlers = newHandlerExecutor();
+		workers = Executors.newFixedThreadPool(numThreads);
+		idleWorkers = new Semaphore(numThreads);
+		server.setExecutor(handlers);
+		running = true;
+		dispatcher = new Thread(new Runnable() {
+			public void run() {
+				dispatch();
+			}
+		}, "SolverService dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+		server.start();
+	}
+	
+	/* stops accepting requests and stops the threads, jobs still queued are not solved */
+	public void stop() {
+		running = false;
+		server.stop(0);
+		dispatcher.interrupt();
+		workers.shutdown();
+		handlers.shutdown();
+	}
+	
+	/* return port the server is bound to, useful when started on port 0 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+	
+	public long getNumRequests() {
+		return numRequests.get();
+	}
+	
+	public long getNumBatches() {
+		return numBatches.get();
+	}
+	
+	public long getNumExpired() {
+		return numExpired.get();
+	}
+	
+	/* return an executor starting a virtual thread per task if the runtime has them, else a cached pool */
+	private static ExecutorService newHandlerExecutor() {
+		try {
+			/* looked up by reflection, virtual threads are newer than the language level of the project */
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************* REQUESTS ******************************************************
+	 ***********************************************************************************************************************/
+	
+	private void handleSolve(HttpExchange exchange) throws IOException {
+		try {
+			numRequests.incrementAndGet();
+			if (!exchange.getRequestMethod().equals("POST")) {
+				reply(exchange, 405, "POST puzzles to /solve\n");
+				return;
+			}
+			long deadlineMs;
+			try {
+				deadlineMs = parseDeadline(exchange.getRequestURI().getQuery());
+			} catch (NumberFormatException e) {
+				reply(exchange, 400, "invalid deadline\n");
+				return;
+			}
+			byte[] body = readBody(exchange.getRequestBody());
+			if (body == null) {
+				reply(exchange, 413, "request larger than " + MAX_REQUEST_BYTES + " bytes\n");
+				return;
+			}
+			List<Board> boards;
+			try {
+				boards = Board.readAll(body, "request", MAX_REQUEST_PUZZLES);
+			} catch (IOException e) {
+				reply(exchange, 400, e.getMessage() + "\n");
+				return;
+			}
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+			ArrayList<Job> jobs = new ArrayList<Job>(boards.size());
+			for (Board board : boards) {
+				Job job = new Job(board, deadline);
+				jobs.add(job);
+				queue.add(job);
+			}
+			StringBuilder sb = new StringBuilder();
+			for (Job job : jobs) {
+				long remaining = deadline - System.nanoTime();
+				boolean finished;
+				try {
+					finished = job.done.await(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					finished = false;
+				}
+				if (sb.length() > 0) {
+					sb.append('\n');
+				}
+				if (!finished || job.status == EXPIRED) {
+					sb.append(STATUS_NAMES[EXPIRED]).append('\n');
+				} else {
+					sb.append(STATUS_NAMES[job.status]).append('\n');
+					job.board.render(sb, false);
+				}
+			}
+			reply(exchange, 200, sb.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * finds the deadline among the parameters of the query
+	 * 
+	 * @return deadline in ms, DEFAULT_DEADLINE if the query has none and at
+	 * 		most MAX_DEADLINE
+	 * @throws NumberFormatException
+	 * 		if the deadline is not a number or not positive
+	 */
+	private static long parseDeadline(String query) {
+		if (query == null) {
+			return DEFAULT_DEADLINE;
+		}
+		for (String param : query.split("&")) {
+			if (param.startsWith("deadline=")) {
+				long deadlineMs = Long.parseLong(param.substring("deadline=".length()));
+				if (deadlineMs <= 0) {
+					throw new NumberFormatException("deadline " + deadlineMs);
+				}
+				return Math.min(deadlineMs, MAX_DEADLINE);
+			}
+		}
+		return DEFAULT_DEADLINE;
+	}
+	
+	/* return the bytes of the body, null if it is larger than MAX_REQUEST_BYTES */
+	private static byte[] readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) >= 0) {
+			out.write(buf, 0, n);
+			if (out.size() > MAX_REQUEST_BYTES) {
+				return null;
+			}
+		}
+		return out.toByteArray();
+	}
+	
+	private static void reply(HttpExchange exchange, int code, String text) throws IOException {
+		byte[] bytes = text.getBytes("US-ASCII");
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+		exchange.sendResponseHeaders(code, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/***********************************************************************************************************************
+	 ******************************************************** BATCHES ******************************************************
+	 ***********************************************************************************************************************/
+	
+	/* waits for a free worker, then hands it every queued job up to BATCH_CELLS cells */
+	private void dispatch() {
+		while (running) {
+			try {
+				idleWorkers.acquire();
+				Job job = queue.take();
+				final ArrayList<Job> batch = new ArrayList<Job>();
+				int numCells = 0;
+				while (job != null) {
+					batch.add(job);
+					numCells += job.board.getNumCells();
+					job = numCells < BATCH_CELLS ? queue.poll() : null;
+				}
+				numBatches.incrementAndGet();
+				workers.execute(new Runnable() {
+					public void run() {
+						try {
+							for (Job job : batch) {
+								solve(job);
+							}
+						} finally {
+							idleWorkers.release();
+						}
+					}
+				});
+			} catch (InterruptedException e) {
+				/* stop() interrupts the dispatcher */
+				return;
+			}
+		}
+	}
+	
+	private void solve(Job job) {
+		try {
+			if (System.nanoTime() - job.deadline > 0) {
+				numExpired.incrementAndGet();
+				job.status = EXPIRED;
+				return;
+			}
+			Solver solver = new Solver(job.board);
+			solver.setVerbose(false);
+			solver.setDeadline(job.deadline);
+			if (!cache.lookup(job.board)) {
+				solver.SATsolve();
+				if (solver.checkIfSolved()) {
+					cache.store(job.board);
+				}
+			}
+			if (solver.isExhausted()) {
+				numExpired.incrementAndGet();
+				job.status = EXPIRED;
+				return;
+			}
+			job.status = solver.checkIfSolved() ? SOLVED : UNSOLVED;
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			job.status = UNSOLVED;
+		} finally {
+			job.done.countDown();
+		}
+	}
+}
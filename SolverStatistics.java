@@ -0,0 +1,139 @@
+/**
+ * counts how often each rule family of a Solver is applied, how often it
+ * deduces something, the edges it deduces, the contradictions it raises
+ * and, if timing is enabled, the time spent in it
+ *
+ * families are indexed by the Solver.RULE_* ids, the probe families count
+ * the edges forced by probing and the implication family those set by the
+ * implications the probes learned
+ *
+ * @author Kyler
+ *
+ */
+public class SolverStatistics {
+	/* rule tag of each family, in Solver.RULE_* order */
+	public static final String[] TAGS = { "FL", "IE.S", "IE.N", "Z", "P", "A3", "D3", "SAT.1", "SAT.2", "SAT.3", "IMP" };
+	public static final int NUM_FAMILIES = TAGS.length;
+	private long[] calls = new long[NUM_FAMILIES];
+	private long[] fired = new long[NUM_FAMILIES];
+	private long[] deductions = new long[NUM_FAMILIES];
+	private long[] contradictions = new long[NUM_FAMILIES];
+	private long[] nanos = new long[NUM_FAMILIES];
+	private long numProbes;
+	private long numSkippedProbes;
+	private long numPasses;
+	
+	/* the Solver updates the counters directly */
+	void addCall(int family, boolean changed) {
+		calls[family]++;
+		if (changed) {
+			fired[family]++;
+		}
+	}
+	
+	void addDeduction(int family) {
+		deductions[family]++;
+	}
+	
+	void addContradiction(int family) {
+		contradictions[family]++;
+	}
+	
+	void addNanos(int family, long ns) {
+		nanos[family] += ns;
+	}
+	
+	void addProbe() {
+		numProbes++;
+	}
+	
+	void addSkippedProbe() {
+		numSkippedProbes++;
+	}
+	
+	void addPass() {
+		numPasses++;
+	}
+	
+	/* number of times the family was applied */
+	public long getCalls(int family) {
+		return calls[family];
+	}
+	
+	/* number of times the family deduced at least one edge */
+	public long getFired(int family) {
+		return fired[family];
+	}
+	
+	/* number of edges the family set */
+	public long getDeductions(int family) {
+		return deductions[family];
+	}
+	
+	/* number of consistency exceptions the family raised */
+	public long getContradictions(int family) {
+		return contradictions[family];
+	}
+	
+	/* time spent in the family, 0 unless the Solver is timing its rules */
+	public long getNanos(int family) {
+		return nanos[family];
+	}
+	
+	/* number of edges probed by SATsolve */
+	public long getNumProbes() {
+		return numProbes;
+	}
+	
+	/* number of edges SATsolve left unprobed because the implications learned showed the probe would repeat an earlier one */
+	public long getNumSkippedProbes() {
+		return numSkippedProbes;
+	}
+	
+	/* number of probing passes over the unknown edges made by SATsolve */
+	public long getNumPasses() {
+		return numPasses;
+	}
+	
+	/* adds the counters of other to these */
+	public void add(SolverStatistics other) {
+		for (int f = 0; f < NUM_FAMILIES; f++) {
+			calls[f] += other.calls[f];
+			fired[f] += other.fired[f];
+			deductions[f] += other.deductions[f];
+			contradictions[f] += other.contradictions[f];
+			nanos[f] += other.nanos[f];
+		}
+		numProbes += other.numProbes;
+		numSkippedProbes += other.numSkippedProbes;
+		numPasses += other.numPasses;
+	}
+	
+	public void reset() {
+		for (int f = 0; f < NUM_FAMILIES; f++) {
+			calls[f] = 0;
+			fired[f] = 0;
+			deductions[f] = 0;
+			contradictions[f] = 0;
+			nanos[f] = 0;
+		}
+		numProbes = 0;
+		numSkippedProbes = 0;
+		numPasses = 0;
+	}
+	
+	/**
+	 * returns one row per family followed by the probe counts
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-6s %12s %12s %12s %14s %12s%n", "rule", "calls", "fired", "deductions",
+				"contradictions", "ms"));
+		for (int f = 0; f < NUM_FAMILIES; f++) {
+			sb.append(String.format("%-6s %12d %12d %12d %14d %12.3f%n", TAGS[f], calls[f], fired[f], deductions[f],
+					contradictions[f], nanos[f] / 1000000.0d));
+		}
+		sb.append(">> Probes: " + numProbes + ", Skipped: " + numSkippedProbes + ", Passes: " + numPasses);
+		return sb.toString();
+	}
+}